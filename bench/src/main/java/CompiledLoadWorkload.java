@@ -0,0 +1,38 @@
+import shadowpac.bench.Workload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Loads level 0 of the manifest from its compiled world file. The file is compiled into a
+ * temporary file, so that it isn't picked up by anything else reading res/.
+ */
+public class CompiledLoadWorkload implements Workload {
+    private final static long SEED = 20030;
+    private Path compiled;
+    private int targetScore;
+
+    @Override
+    public void setUp(int size) {
+        try {
+            LevelManifest manifest = new LevelManifest(LevelManifest.DEFAULT_FILE);
+            targetScore = manifest.getTargetScore(0);
+            compiled = Files.createTempFile("level0", ".bin");
+            compiled.toFile().deleteOnExit();
+            LevelCompiler.compile(manifest.getFileName(0), compiled);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int run() {
+        try {
+            return new Level(LevelFile.readCompiled(compiled), targetScore, SEED).getScore();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+import bagel.util.Point;
+import shadowpac.bench.Workload;
+
+import java.util.ArrayList;
+
+/**
+ * Checks pac against a list of dots that it doesn't collide with, so every dot is checked.
+ */
+public class IsCollidingWorkload implements Workload {
+    private final static int SPACING = 50;
+    private final static int COLS = 100;
+    private Pac pac;
+    private final ArrayList<Dot> dots = new ArrayList<>();
+
+    @Override
+    public void setUp(int size) {
+        EntityStore dotData = new EntityStore();
+        for (int i = 0; i < size; i++) {
+            dots.add(new Dot(dotData, new Point((i % COLS) * SPACING, (i / COLS) * SPACING)));
+        }
+        pac = new Pac(new EntityStore(), new Point(-SPACING, -SPACING));
+    }
+
+    @Override
+    public int run() {
+        return pac.isColliding(dots);
+    }
+}
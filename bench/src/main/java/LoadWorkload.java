@@ -0,0 +1,33 @@
+import shadowpac.bench.Workload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Loads level 0 of the manifest from its csv world file, even if it has been compiled.
+ */
+public class LoadWorkload implements Workload {
+    private final static long SEED = 20030;
+    private String fileName;
+    private int targetScore;
+
+    @Override
+    public void setUp(int size) {
+        try {
+            LevelManifest manifest = new LevelManifest(LevelManifest.DEFAULT_FILE);
+            fileName = manifest.getFileName(0);
+            targetScore = manifest.getTargetScore(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int run() {
+        try {
+            return new Level(LevelFile.readCsv(fileName), targetScore, SEED).getScore();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
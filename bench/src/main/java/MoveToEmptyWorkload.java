@@ -0,0 +1,35 @@
+import bagel.util.Point;
+import shadowpac.bench.Workload;
+
+/**
+ * Moves pac back and forth along an empty row between rows of walls, with moveToEmpty().
+ */
+public class MoveToEmptyWorkload implements Workload {
+    private final static int WALL_SIZE = 50;
+    private final static int COLS = 100;
+    private final static int TURN_STEPS = 200;
+    private Pac pac;
+    private WallGrid walls;
+    private double direction = MovableEntity.FACING_RIGHT;
+    private int steps = 0;
+
+    @Override
+    public void setUp(int size) {
+        // walls fill every other row, so rows of walls and empty rows take turns
+        EntityStore wallData = new EntityStore();
+        for (int i = 0; i < size; i++) {
+            new Wall(wallData, new Point((i % COLS) * WALL_SIZE, (i / COLS) * 2 * WALL_SIZE));
+        }
+        walls = new WallGrid(wallData);
+        pac = new Pac(new EntityStore(), new Point(WALL_SIZE, WALL_SIZE + 12));
+    }
+
+    @Override
+    public int run() {
+        if (++steps == TURN_STEPS) {
+            steps = 0;
+            direction = (direction + Math.PI) % (2 * Math.PI);
+        }
+        return pac.moveToEmpty(direction, walls, true) ? 1 : 0;
+    }
+}
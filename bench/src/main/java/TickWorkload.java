@@ -0,0 +1,32 @@
+import shadowpac.bench.Workload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Plays level 0 of the manifest headless, one tick per operation, changing arrow keys every
+ * 30 ticks.
+ */
+public class TickWorkload implements Workload {
+    private final static long SEED = 20030;
+    private final static int TURN_TICKS = 30;
+    private final static int[] KEYS = {Level.KEY_RIGHT, Level.KEY_UP, Level.KEY_LEFT,
+            Level.KEY_DOWN};
+    private Level level;
+    private int ticks = 0;
+
+    @Override
+    public void setUp(int size) {
+        try {
+            level = new LevelManifest(LevelManifest.DEFAULT_FILE).create(0, SEED);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int run() {
+        ticks++;
+        return level.tick(KEYS[(ticks / TURN_TICKS) % KEYS.length]);
+    }
+}
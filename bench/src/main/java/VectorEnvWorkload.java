@@ -0,0 +1,36 @@
+import shadowpac.bench.Workload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.SplittableRandom;
+
+/**
+ * Steps a VectorEnv of level 1 from the manifest, with a fixed set of random actions.
+ */
+public class VectorEnvWorkload implements Workload {
+    private final static long SEED = 20030;
+    private final static int MAX_STEPS = 5000;
+    private VectorEnv env;
+    private int[] actions;
+
+    @Override
+    public void setUp(int size) {
+        try {
+            env = new VectorEnv(new LevelManifest(LevelManifest.DEFAULT_FILE), 1, size, SEED, 1,
+                    MAX_STEPS);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        SplittableRandom random = new SplittableRandom(SEED);
+        actions = new int[size];
+        for (int i = 0; i < size; i++) {
+            actions[i] = random.nextInt(VectorEnv.DOWN + 1);
+        }
+    }
+
+    @Override
+    public int run() {
+        env.step(actions);
+        return env.observations().getInt(0);
+    }
+}
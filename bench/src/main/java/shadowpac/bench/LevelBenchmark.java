@@ -0,0 +1,43 @@
+package shadowpac.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a full headless Level.tick() on level 0, and loading level 0 from its CSV file
+ * and from its compiled file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelBenchmark {
+    private Workload tick;
+    private Workload load;
+    private Workload loadCompiled;
+
+    @Setup
+    public void setUp() {
+        tick = Workload.create("TickWorkload", 0);
+        load = Workload.create("LoadWorkload", 0);
+        loadCompiled = Workload.create("CompiledLoadWorkload", 0);
+    }
+
+    @Benchmark
+    public int tick() {
+        return tick.run();
+    }
+
+    @Benchmark
+    public int load() {
+        return load.run();
+    }
+
+    @Benchmark
+    public int loadCompiled() {
+        return loadCompiled.run();
+    }
+}
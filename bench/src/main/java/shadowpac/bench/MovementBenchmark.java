@@ -0,0 +1,39 @@
+package shadowpac.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks MovableEntity.moveToEmpty() against walls, and Entity.isColliding(ArrayList)
+ * against dots, for a growing number of entities.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovementBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int entities;
+
+    private Workload moveToEmpty;
+    private Workload isColliding;
+
+    @Setup
+    public void setUp() {
+        moveToEmpty = Workload.create("MoveToEmptyWorkload", entities);
+        isColliding = Workload.create("IsCollidingWorkload", entities);
+    }
+
+    @Benchmark
+    public int moveToEmpty() {
+        return moveToEmpty.run();
+    }
+
+    @Benchmark
+    public int isColliding() {
+        return isColliding.run();
+    }
+}
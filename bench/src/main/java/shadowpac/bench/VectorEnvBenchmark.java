@@ -0,0 +1,31 @@
+package shadowpac.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks one VectorEnv.step() on level 1, for a growing number of environments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorEnvBenchmark {
+    @Param({"1", "64", "1024"})
+    private int environments;
+
+    private Workload step;
+
+    @Setup
+    public void setUp() {
+        step = Workload.create("VectorEnvWorkload", environments);
+    }
+
+    @Benchmark
+    public int step() {
+        return step.run();
+    }
+}
@@ -0,0 +1,41 @@
+package shadowpac.bench;
+
+/**
+ * One piece of game code to be benchmarked.
+ * <p></p>
+ * The game lives in the default package, which JMH benchmarks can't be in, and which code in a
+ * named package can't refer to. So each workload is written in the default package as a class
+ * implementing this interface, and the benchmarks create it by name. There is only one
+ * implementation per benchmark, so the JIT inlines the interface call.
+ */
+public interface Workload {
+
+    /**
+     * Builds everything the workload needs, outside of the measured time.
+     * @param size the number of entities to build the workload with
+     */
+    void setUp(int size);
+
+    /**
+     * Runs one operation of the workload.
+     * @return int a result that depends on the work done, for the benchmark to consume
+     */
+    int run();
+
+    /**
+     * Creates and sets up a workload.
+     * @param className the name of the workload class, in the default package
+     * @param size the number of entities to build the workload with
+     * @return Workload the workload, ready to run
+     */
+    static Workload create(String className, int size) {
+        try {
+            Workload workload = (Workload) Class.forName(className)
+                    .getDeclaredConstructor().newInstance();
+            workload.setUp(size);
+            return workload;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create workload " + className, e);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * The AgentServer class.
+ * Lets agents in other processes on the same machine play headless levels over a local TCP
+ * socket, e.g. a trainer written in Python. Every connection is a session with its own
+ * VectorEnv, which the agent resets and steps with a small binary protocol. All sessions are
+ * served by one thread with a NIO selector, and observations are written to the socket
+ * straight from the VectorEnv's buffer, so a step creates no garbage.
+ * <p></p>
+ * The protocol: the agent sends a request, and waits for the reply before sending the next
+ * one. Numbers are little-endian. Every request starts with a byte naming it:
+ * <ul>
+ *     <li>RESET, then int level number, int environments, long seed, int ticks per step and
+ *     int max steps per episode: builds the session's VectorEnv (see its constructor).
+ *     Replies OK, int environments, int observation size, then the observations</li>
+ *     <li>STEP, then one byte per environment with its action (VectorEnv.NOOP to
+ *     VectorEnv.DOWN): steps every environment. Replies OK, a float reward per environment,
+ *     a byte per environment that is 1 if its episode ended (else 0), then the observations</li>
+ *     <li>OBSERVE: replies OK, then the observations</li>
+ * </ul>
+ * The observations are those of VectorEnv.observations(), laid out as Level.observe()
+ * describes. A request the server can't carry out (e.g. STEP before RESET) is replied to
+ * with ERROR, an int length and a UTF-8 message, and the connection is closed. To end a
+ * session, the agent simply closes the connection.
+ * <p></p>
+ * Usage: java AgentServer [port], or java ShadowPac --server [port]
+ */
+public class AgentServer {
+    /** The port the server listens on if none is given */
+    public final static int DEFAULT_PORT = 7531;
+    /** A request to build a session's environments */
+    public final static byte RESET = 1;
+    /** A request to step a session's environments */
+    public final static byte STEP = 2;
+    /** A request for a session's current observations */
+    public final static byte OBSERVE = 3;
+    /** The first byte of a reply to a request that was carried out */
+    public final static byte OK = 0;
+    /** The first byte of a reply to a request that couldn't be carried out */
+    public final static byte ERROR = 1;
+    /** The most environments a session may have */
+    public final static int MAX_ENVIRONMENTS = 1 << 16;
+
+    private final static ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    // opcode, level, environments, seed, ticks per step, max steps
+    private final static int RESET_BYTES = 1 + 2 * Integer.BYTES + Long.BYTES + 2 * Integer.BYTES;
+
+    private final LevelManifest manifest;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private volatile boolean running = true;
+
+    /**
+     * The constructor for AgentServer. Starts listening on the loopback address, so that
+     * only processes on the same machine can connect.
+     * @param manifest the manifest the levels of every session are built from
+     * @param port the port to listen on (0 for any free port)
+     * @throws IOException if the port can't be listened on
+     */
+    public AgentServer(LevelManifest manifest, int port) throws IOException {
+        this.manifest = manifest;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * The entry point for the server.
+     */
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        try {
+            AgentServer server = new AgentServer(new LevelManifest(LevelManifest.DEFAULT_FILE),
+                    port);
+            System.out.println("Agent server listening on port " + server.getPort());
+            server.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Agent server failed", e);
+        }
+    }
+
+    /**
+     * A getter for the port the server listens on.
+     * @return int the port.
+     * @throws IOException if the server has been closed
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Serves every session until the thread is interrupted or close() is called, then
+     * closes them.
+     * @throws IOException if the server socket fails
+     */
+    public void run() throws IOException {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            selector.select();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) continue;
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+                Session session = (Session) key.attachment();
+                try {
+                    if (key.isWritable()) {
+                        session.write();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        session.read();
+                    }
+                } catch (IOException e) {
+                    // the agent has gone away
+                    session.close();
+                }
+            }
+        }
+
+        // stopped: close every session, and the server itself
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    /**
+     * Stops the server, closing every session. May be called from any thread; run()
+     * returns once it has closed everything.
+     */
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Session(key));
+    }
+
+    /**
+     * One agent's connection, with its environments and the buffers of its requests and
+     * replies. The buffers are only replaced by a RESET, so stepping reuses them.
+     */
+    private class Session {
+        private final SelectionKey key;
+        private final SocketChannel channel;
+        private VectorEnv env;
+        private int[] actions;
+        private ByteBuffer in = ByteBuffer.allocate(RESET_BYTES).order(ORDER);
+        // a reply is the header (status, rewards, done flags...) then the observations,
+        // sent together with one gathering write
+        private ByteBuffer header = ByteBuffer.allocateDirect(1 + 2 * Integer.BYTES).order(ORDER);
+        private final ByteBuffer[] reply = new ByteBuffer[2];
+        private boolean closing = false;
+
+        Session(SelectionKey key) {
+            this.key = key;
+            this.channel = (SocketChannel) key.channel();
+            // nothing to send yet
+            header.flip();
+            reply[0] = header;
+            reply[1] = ByteBuffer.allocate(0);
+        }
+
+        // reads what the agent has sent, and carries out the requests that are complete
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            handleAll();
+        }
+
+        // writes more of the reply being sent, once the socket is ready for it
+        void write() throws IOException {
+            channel.write(reply);
+            if (isSending()) return;
+            if (closing) {
+                close();
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            // requests that arrived while the reply was being written
+            handleAll();
+        }
+
+        // carries out the requests that have arrived, one at a time: a request is only
+        // carried out once the reply to the one before has been sent
+        private void handleAll() throws IOException {
+            in.flip();
+            while (!closing && !isSending() && handle()) {
+                // keep going while whole requests have arrived
+            }
+            in.compact();
+        }
+
+        // carries out the request at the start of in, if it has all arrived.
+        // returns whether it was carried out
+        private boolean handle() throws IOException {
+            if (!in.hasRemaining()) return false;
+            byte request = in.get(in.position());
+            if (request == RESET) {
+                if (in.remaining() < RESET_BYTES) return false;
+                in.get();
+                reset(in.getInt(), in.getInt(), in.getLong(), in.getInt(), in.getInt());
+            } else if (request == STEP) {
+                if (env == null) {
+                    fail("STEP before RESET");
+                } else if (in.remaining() >= 1 + actions.length) {
+                    in.get();
+                    step();
+                } else {
+                    return false;
+                }
+            } else if (request == OBSERVE) {
+                in.get();
+                if (env == null) {
+                    fail("OBSERVE before RESET");
+                } else {
+                    header.clear();
+                    header.put(OK);
+                    send();
+                }
+            } else {
+                fail("Unknown request " + request);
+            }
+            return true;
+        }
+
+        private void reset(int level, int count, long seed, int ticksPerStep, int maxSteps)
+                throws IOException {
+            if (level < 0 || level >= manifest.size()) {
+                fail("No level " + level);
+                return;
+            }
+            if (count < 1 || count > MAX_ENVIRONMENTS) {
+                fail("Environments must be from 1 to " + MAX_ENVIRONMENTS);
+                return;
+            }
+            try {
+                env = new VectorEnv(manifest, level, count, seed, ticksPerStep, maxSteps, ORDER);
+            } catch (RuntimeException e) {
+                fail("Could not reset: " + e.getMessage());
+                return;
+            }
+            actions = new int[count];
+            // room for the largest request and reply of these environments
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(RESET_BYTES, 1 + count)).order(ORDER);
+            bigger.put(in);
+            bigger.flip();
+            in = bigger;
+            header = ByteBuffer.allocateDirect(1 + Math.max(2 * Integer.BYTES,
+                    count * (Float.BYTES + 1))).order(ORDER);
+            reply[0] = header;
+            reply[1] = env.observations().duplicate();
+
+            header.put(OK);
+            header.putInt(count);
+            header.putInt(env.observationSize());
+            send();
+        }
+
+        private void step() throws IOException {
+            for (int i = 0; i < actions.length; i++) {
+                int action = in.get();
+                if (action < VectorEnv.NOOP || action > VectorEnv.DOWN) {
+                    fail("Unknown action " + action);
+                    return;
+                }
+                actions[i] = action;
+            }
+            env.step(actions);
+
+            float[] rewards = env.rewards();
+            boolean[] dones = env.dones();
+            header.clear();
+            header.put(OK);
+            for (float reward : rewards) {
+                header.putFloat(reward);
+            }
+            for (boolean done : dones) {
+                header.put(done ? (byte) 1 : 0);
+            }
+            send();
+        }
+
+        // sends the header followed by all the observations
+        private void send() throws IOException {
+            header.flip();
+            reply[1].clear();
+            flush();
+        }
+
+        // tells the agent what went wrong, then closes the connection once that's sent
+        private void fail(String message) throws IOException {
+            byte[] text = message.getBytes(StandardCharsets.UTF_8);
+            header = ByteBuffer.allocate(1 + Integer.BYTES + text.length).order(ORDER);
+            header.put(ERROR).putInt(text.length).put(text).flip();
+            reply[0] = header;
+            reply[1] = ByteBuffer.allocate(0);
+            closing = true;
+            flush();
+        }
+
+        // writes as much of the reply as the socket takes; the rest is written by write()
+        // when the socket is ready for it, and no more requests are read until then
+        private void flush() throws IOException {
+            channel.write(reply);
+            if (isSending()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (closing) {
+                close();
+            }
+        }
+
+        private boolean isSending() {
+            return reply[0].hasRemaining() || reply[1].hasRemaining();
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
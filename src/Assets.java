@@ -0,0 +1,196 @@
+import bagel.Image;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The Assets class.
+ * The one place sprites are loaded from. Every file is loaded once, and every entity using it
+ * shares the same Sprite.
+ * <p></p>
+ * preload() starts packing every PNG in res/ into one atlas texture on a background thread,
+ * while the window is being opened. Sprites are then drawn as sections of the atlas, so a whole
+ * frame is drawn from a single texture. The atlas is decoded and packed with ImageIO, and
+ * written to a temporary PNG that Bagel loads as one Image the first time a sprite is drawn
+ * (Bagel can only create images on the window's thread).
+ * If preload() is never called (e.g. without a window), or the atlas can't be built, sprites
+ * are drawn from their own images instead.
+ */
+public class Assets {
+    /** The folder all assets are in */
+    public final static String RES_DIR = "res";
+    private final static String PNG = ".png";
+    // one pixel of empty space around every sprite, so that neighbours never bleed into it
+    private final static int PADDING = 1;
+
+    private final static Map<String, Sprite> SPRITES = new ConcurrentHashMap<>();
+    private static volatile CompletableFuture<Atlas> atlas;
+
+    // utility class, never instantiated
+    private Assets() {}
+
+    /**
+     * Gets the shared sprite of a file, loading it the first time it's asked for.
+     * @param fileName the PNG file, e.g. "res/dot.png"
+     * @return Sprite the sprite, which is the same object for every call with this file.
+     */
+    public static Sprite sprite(String fileName) {
+        return SPRITES.computeIfAbsent(fileName, Sprite::new);
+    }
+
+    /**
+     * Starts building the atlas of every PNG in res/ in the background. Does nothing if it
+     * has been started already.
+     */
+    public static synchronized void preload() {
+        if (atlas == null) {
+            atlas = CompletableFuture.supplyAsync(Assets::buildAtlas);
+        }
+    }
+
+    /**
+     * Finds where a sprite is in the atlas, waiting for the atlas to be built if preload()
+     * has been called.
+     * @param fileName the sprite's file
+     * @return Atlas.Region the sprite's section of the atlas, or null if the sprite should be
+     *         drawn from its own image.
+     */
+    static Atlas.Region region(String fileName) {
+        CompletableFuture<Atlas> pending = atlas;
+        if (pending == null) return null;
+        try {
+            return pending.join().regions.get(fileName);
+        } catch (RuntimeException e) {
+            // already reported by buildAtlas(); fall back to separate images
+            return null;
+        }
+    }
+
+    private static Atlas buildAtlas() {
+        try {
+            List<Path> files;
+            try (Stream<Path> list = Files.list(Paths.get(RES_DIR))) {
+                files = list.filter(file -> file.toString().endsWith(PNG)).sorted()
+                        .collect(Collectors.toList());
+            }
+
+            List<String> names = new ArrayList<>();
+            List<BufferedImage> images = new ArrayList<>();
+            for (Path file : files) {
+                BufferedImage image = ImageIO.read(file.toFile());
+                if (image != null) {
+                    names.add(RES_DIR + "/" + file.getFileName());
+                    images.add(image);
+                }
+            }
+            return Atlas.pack(names, images);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * One texture holding many sprites. The texture is packed in shelves: sprites are sorted
+     * from tallest to shortest and placed left to right, starting a new shelf below when a row
+     * is full.
+     */
+    static class Atlas {
+        private final Path file;
+        private final Map<String, Region> regions = new HashMap<>();
+        private Image image;
+
+        /**
+         * Where a sprite is in the atlas.
+         */
+        static class Region {
+            final Atlas atlas;
+            final double x;
+            final double y;
+
+            private Region(Atlas atlas, double x, double y) {
+                this.atlas = atlas;
+                this.x = x;
+                this.y = y;
+            }
+        }
+
+        private Atlas(Path file) {
+            this.file = file;
+        }
+
+        private static Atlas pack(List<String> names, List<BufferedImage> images)
+                throws IOException {
+            List<Integer> order = new ArrayList<>();
+            int widest = 1;
+            for (int i = 0; i < images.size(); i++) {
+                order.add(i);
+                widest = Math.max(widest, images.get(i).getWidth() + 2 * PADDING);
+            }
+            order.sort(Comparator.comparingInt((Integer i) -> images.get(i).getHeight())
+                    .reversed());
+            int width = Integer.highestOneBit(widest - 1) << 1;
+
+            // first pass places the sprites, second pass draws them
+            int[] xs = new int[images.size()];
+            int[] ys = new int[images.size()];
+            int x = 0, y = 0, shelfHeight = 0;
+            for (int i : order) {
+                BufferedImage image = images.get(i);
+                if (x + image.getWidth() + 2 * PADDING > width) {
+                    x = 0;
+                    y += shelfHeight;
+                    shelfHeight = 0;
+                }
+                xs[i] = x + PADDING;
+                ys[i] = y + PADDING;
+                x += image.getWidth() + 2 * PADDING;
+                shelfHeight = Math.max(shelfHeight, image.getHeight() + 2 * PADDING);
+            }
+            int height = Integer.highestOneBit(Math.max(1, y + shelfHeight - 1)) << 1;
+
+            BufferedImage packed = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            for (int i = 0; i < images.size(); i++) {
+                BufferedImage image = images.get(i);
+                packed.setRGB(xs[i], ys[i], image.getWidth(), image.getHeight(),
+                        image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0,
+                                image.getWidth()), 0, image.getWidth());
+            }
+            Path file = Files.createTempFile("shadowpac-atlas", PNG);
+            file.toFile().deleteOnExit();
+            ImageIO.write(packed, "png", file.toFile());
+
+            Atlas atlas = new Atlas(file);
+            for (int i = 0; i < images.size(); i++) {
+                atlas.regions.put(names.get(i), new Region(atlas, xs[i], ys[i]));
+            }
+            return atlas;
+        }
+
+        /**
+         * A getter for the atlas texture. Loads it on first use, so this must only be called
+         * from the window's thread.
+         * @return Image the atlas.
+         */
+        Image getImage() {
+            if (image == null) {
+                image = new Image(file.toString());
+            }
+            return image;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+
+/**
+ * The BatchRunner class.
+ * Plays many independent playthroughs of a level without a window, spread over all CPU cores,
+ * e.g. to tune a level's target score. Each run builds its own Level, so runs share no
+ * mutable state and the batch scales with the number of cores.
+ * <p></p>
+ * A run is played by a simple bot that holds one arrow key and picks another one at random
+ * every BOT_TURN_TICKS ticks. Like the real game, the player has the lives of one Heart, and
+ * a run ends when the level is won, all lives are lost, or the tick limit is reached.
+ * Both the level and the bot of a run are seeded with the run number, so running the same
+ * batch twice gives exactly the same results.
+ * <p></p>
+ * Runs can be fast forwarded: with more than one tick per step, the level is advanced by
+ * that many ticks at a time with Level.fastForward(), which is much faster and plays out
+ * the same as playing tick by tick.
+ * <p></p>
+ * Usage: java BatchRunner [level number in the manifest] [runs] [max ticks per run]
+ * [ticks per step]
+ */
+public class BatchRunner {
+    private final static int DEFAULT_RUNS = 1000;
+    private final static long DEFAULT_MAX_TICKS = 100_000;
+    // the bot, which FastForwardCheck plays too
+    final static int BOT_TURN_TICKS = 30;
+    final static int[] BOT_KEYS = {Level.KEY_RIGHT, Level.KEY_LEFT, Level.KEY_UP,
+            Level.KEY_DOWN};
+
+    /**
+     * The outcome of one run.
+     */
+    public static class Result {
+        /** The number of the run in its batch (0 for a replay) */
+        public final int run;
+        /** Level.WIN, Level.LOSE, or Level.PLAYING if the tick limit was reached */
+        public final char outcome;
+        /** The score at the end of the run */
+        public final int score;
+        /** The number of ticks played */
+        public final long ticks;
+
+        Result(int run, char outcome, int score, long ticks) {
+            this.run = run;
+            this.outcome = outcome;
+            this.score = score;
+            this.ticks = ticks;
+        }
+    }
+
+    /**
+     * Plays a batch of runs in parallel.
+     * @param levels creates a new level for each run from the run's seed
+     * @param runs the number of runs
+     * @param maxTicks the most ticks a run may take before it is stopped
+     * @param pool the pool that plays the runs
+     * @return List the results, in run order
+     */
+    public static List<Result> run(LongFunction<? extends Level> levels, int runs, long maxTicks,
+                                   ForkJoinPool pool) {
+        return run(levels, runs, maxTicks, 1, pool);
+    }
+
+    /**
+     * Plays a batch of fast forwarded runs in parallel.
+     * @param levels creates a new level for each run from the run's seed
+     * @param runs the number of runs
+     * @param maxTicks the most ticks a run may take before it is stopped
+     * @param step the number of ticks to advance by at a time (1 to play tick by tick)
+     * @param pool the pool that plays the runs
+     * @return List the results, in run order
+     */
+    public static List<Result> run(LongFunction<? extends Level> levels, int runs, long maxTicks,
+                                   int step, ForkJoinPool pool) {
+        List<Callable<Result>> tasks = new ArrayList<>(runs);
+        for (int i = 0; i < runs; i++) {
+            final int run = i;
+            tasks.add(() -> play(run, levels.apply(run), maxTicks, step));
+        }
+
+        List<Result> results = new ArrayList<>(runs);
+        try {
+            for (Future<Result> result : pool.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Run failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Plays one run until it is won, lost or reaches the tick limit.
+     * @param run the number of the run, which also seeds the bot
+     * @param level the level to play
+     * @param maxTicks the most ticks the run may take
+     * @return Result the outcome of the run
+     */
+    public static Result play(int run, Level level, long maxTicks) {
+        return play(run, level, maxTicks, 1);
+    }
+
+    /**
+     * Plays one run until it is won, lost or reaches the tick limit, advancing the level by
+     * up to the given number of ticks at a time. A step never goes past a tick where the bot
+     * changes keys, so the bot plays the same either way.
+     * @param run the number of the run, which also seeds the bot
+     * @param level the level to play
+     * @param maxTicks the most ticks the run may take
+     * @param step the most ticks to advance by at a time (1 to play tick by tick)
+     * @return Result the outcome of the run
+     */
+    public static Result play(int run, Level level, long maxTicks, int step) {
+        SplittableRandom bot = new SplittableRandom(run);
+        Heart heart = new Heart();
+        int keys = 0;
+        long ticks = 0;
+        long startTicks = level.getTicks();
+        char outcome = Level.PLAYING;
+
+        while (outcome == Level.PLAYING && ticks < maxTicks) {
+            if (ticks % BOT_TURN_TICKS == 0) {
+                keys = BOT_KEYS[bot.nextInt(BOT_KEYS.length)];
+            }
+            // stop at the next key change and at the tick limit
+            int ticksToTurn = (int) (BOT_TURN_TICKS - ticks % BOT_TURN_TICKS);
+            int n = (int) Math.min(Math.min(step, ticksToTurn), maxTicks - ticks);
+            char tick = n == 1 ? level.tick(keys) : level.fastForward(keys, n);
+            // a step stops short when a life is lost
+            ticks = level.getTicks() - startTicks;
+
+            if (tick == Level.WIN) {
+                outcome = Level.WIN;
+            } else if (tick == Level.LOSE) {
+                heart.loseHearts(1);
+                if (heart.getHearts() == 0) {
+                    outcome = Level.LOSE;
+                }
+            }
+        }
+        return new Result(run, outcome, level.getScore(), ticks);
+    }
+
+    /**
+     * The entry point for batch runs. Prints one line per run, then the total throughput.
+     */
+    public static void main(String[] args) {
+        int number = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+        long maxTicks = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_MAX_TICKS;
+        int step = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        LevelManifest manifest;
+        try {
+            manifest = new LevelManifest(LevelManifest.DEFAULT_FILE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        // every run copies the same cached template, so the world file is only read once
+        LongFunction<Level> levels = seed -> manifest.create(number, seed);
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        long start = System.nanoTime();
+        List<Result> results = run(levels, runs, maxTicks, step, pool);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        long totalTicks = 0;
+        int wins = 0;
+        for (Result result : results) {
+            System.out.println("run " + result.run + ": " + outcomeName(result.outcome)
+                    + " score " + result.score + " ticks " + result.ticks);
+            totalTicks += result.ticks;
+            if (result.outcome == Level.WIN) wins++;
+        }
+        System.out.printf("%d runs (%d won) on %d threads, %d ticks in %.2f s: %.0f ticks/s%n",
+                runs, wins, pool.getParallelism(), totalTicks, seconds, totalTicks / seconds);
+    }
+
+    private static String outcomeName(char outcome) {
+        if (outcome == Level.WIN) return "WIN";
+        if (outcome == Level.LOSE) return "LOSE";
+        return "TIMEOUT";
+    }
+}
@@ -5,15 +5,17 @@ import bagel.util.*;
  * The Cherry class. An extension to the Entity class.
  */
 public class Cherry extends Entity {
-    private final static Image CHERRY_IMG = new Image("res/cherry.png");
+    /** The sprite every cherry is drawn with. */
+    public final static Sprite CHERRY_IMG = Assets.sprite("res/cherry.png");
     /** Score for player if the cherry is eaten. */
     public final static int SCORE = 20;
 
     /**
      * The constructor for Cherry.
+     * @param store the store holding the state of this cherry
      * @param loc the initial location of cherry
      */
-    public Cherry(Point loc) {
-        super(CHERRY_IMG, loc);
+    public Cherry(EntityStore store, Point loc) {
+        super(CHERRY_IMG, store, EntityStore.CHERRY, loc);
     }
 }
@@ -8,51 +8,120 @@ import java.util.ArrayList;
  * An entity is defined as something that physically exists and can interact in some way
  * with other entities in game.
  * Each entity has a (x,y) coordinate that points to its certain location
- * on the map, an image, and a bounding box derived from its location and image size.
+ * on the map, a sprite, and a bounding box derived from its location and sprite size.
+ * <p></p>
+ * The location and size are not stored in the entity itself, but in an EntityStore shared by
+ * a group of entities (e.g. all ghosts in a level), so that loops over the whole group can run
+ * over plain arrays. An entity is a view of one index in its store.
  */
 public abstract class Entity {
-    /** The "off-screen" location for entities that are temporarily removed from the map.
-     */
-    public final static Point OFF_SCREEN = new Point(1200, 1200);
-    private Point loc;
-    private Image image;
-    private Rectangle boundingBox;
+    private final EntityStore store;
+    private final int index;
+    private Sprite sprite;
 
     /**
-     * The constructor for Entity. Automatically builds the bounding box based on param value.
-     * @param image the image of this entity
+     * The constructor for Entity. Adds the entity to the given store.
+     * @param sprite the sprite of this entity
+     * @param store the store holding the state of this entity
+     * @param type the type of this entity, e.g. EntityStore.DOT
      * @param loc the starting location of this entity
      */
-    public Entity(Image image, Point loc) {
-        this.loc = loc;
-        this.image = image;
-        this.boundingBox = new Rectangle(loc.x, loc.y, this.image.getWidth(),
-                this.image.getHeight());
+    public Entity(Sprite sprite, EntityStore store, int type, Point loc) {
+        this.sprite = sprite;
+        this.store = store;
+        this.index = store.add(type, loc.x, loc.y, sprite.getWidth(), sprite.getHeight());
     }
 
+    /**
+     * A getter for the store holding this entity's state.
+     * @return EntityStore the entity's store.
+     */
+    public EntityStore getStore() {
+        return this.store;
+    }
 
     /**
-     * A getter for the entity's location.
+     * A getter for this entity's index in its store.
+     * @return int the entity's index.
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+
+    /**
+     * A getter for the entity's location. Creates a new Point, so movement and collision
+     * code should use getX() and getY() instead.
      * @return Point the entity's current location.
      */
     public Point getLocation() {
-        return this.loc;
+        return new Point(getX(), getY());
+    }
+
+    /**
+     * A getter for the x coordinate of the entity's top-left corner.
+     * @return double the entity's current x coordinate.
+     */
+    public double getX() {
+        return this.store.getX(this.index);
+    }
+
+    /**
+     * A getter for the y coordinate of the entity's top-left corner.
+     * @return double the entity's current y coordinate.
+     */
+    public double getY() {
+        return this.store.getY(this.index);
+    }
+
+    /**
+     * A getter for the entity's width, which is the width of its sprite.
+     * @return double the entity's width.
+     */
+    public double getWidth() {
+        return this.store.getWidth(this.index);
     }
 
     /**
-     * A getter for the entity's image.
-     * @return Image the entity's image.
+     * A getter for the entity's height, which is the height of its sprite.
+     * @return double the entity's height.
      */
-    public Image getImage() {
-        return this.image;
+    public double getHeight() {
+        return this.store.getHeight(this.index);
     }
 
     /**
-     * A getter for the entity's bounding box.
+     * Checks whether the entity is on the map. Inactive entities (e.g. eaten ghosts) are not
+     * moved, collided with or drawn.
+     * @return boolean true if the entity is active, false otherwise.
+     */
+    public boolean isActive() {
+        return this.store.isActive(this.index);
+    }
+
+    /**
+     * Takes the entity off the map, or puts it back.
+     * @param isActive true to put the entity on the map, false to take it off
+     */
+    public void setActive(boolean isActive) {
+        this.store.setActive(this.index, isActive);
+    }
+
+    /**
+     * A getter for the entity's sprite.
+     * @return Sprite the entity's sprite.
+     */
+    public Sprite getSprite() {
+        return this.sprite;
+    }
+
+    /**
+     * A getter for the entity's bounding box. Creates a new Rectangle, so movement and
+     * collision code should use the coordinates and size directly instead.
      * @return Rectangle the entity's bounding box.
      */
     public Rectangle getBoundingBox() {
-        return this.boundingBox;
+        return new Rectangle(getX(), getY(), getWidth(), getHeight());
     }
 
     /**
@@ -60,26 +129,32 @@ public abstract class Entity {
      * @param newLoc the entity's new location.
      */
     public void setLocation(Point newLoc) {
-        this.loc = newLoc;
-        this.boundingBox = new Rectangle(this.loc.x, this.loc.y, this.image.getWidth(),
-                this.image.getHeight());
+        setLocation(newLoc.x, newLoc.y);
+    }
+
+    /**
+     * A setter for the entity's location.
+     * @param x the entity's new x coordinate.
+     * @param y the entity's new y coordinate.
+     */
+    public void setLocation(double x, double y) {
+        this.store.setLocation(this.index, x, y);
     }
 
     /**
-     * A setter for the entity's image.
-     * @param newImage the entity's new image.
+     * A setter for the entity's sprite.
+     * @param newSprite the entity's new sprite.
      */
-    public void setImage(Image newImage) {
-        this.image = newImage;
+    public void setSprite(Sprite newSprite) {
+        this.sprite = newSprite;
+        this.store.setSize(this.index, newSprite.getWidth(), newSprite.getHeight());
     }
 
 
     /** Draws an entity into the game.
      */
     public void draw() {
-        double x = this.loc.x;
-        double y = this.loc.y;
-        this.image.drawFromTopLeft(x, y);
+        this.sprite.draw(getX(), getY());
     }
 
     /**
@@ -87,9 +162,16 @@ public abstract class Entity {
      * @param options Bagel's DrawOptions for various options for drawing the entity.
      */
     public void draw(DrawOptions options) {
-        double x = this.loc.x;
-        double y = this.loc.y;
-        this.image.drawFromTopLeft(x, y, options);
+        this.sprite.draw(getX(), getY(), options);
+    }
+
+    /**
+     * Queues an entity to be drawn when the queue is submitted.
+     * @param queue the render queue of the frame
+     * @param layer the layer to draw the entity in, e.g. RenderQueue.PICKUPS
+     */
+    public void draw(RenderQueue queue, int layer) {
+        queue.add(layer, this.sprite, getX(), getY(), 0);
     }
 
     /** Checks if two entities collide (i.e., their bounding boxes intersect)
@@ -97,7 +179,7 @@ public abstract class Entity {
      * @return boolean true if colliding, false if not colliding
      */
     public boolean isColliding(Entity entity) {
-        return this.boundingBox.intersects(entity.boundingBox);
+        return entity.store.intersects(entity.index, getX(), getY(), getWidth(), getHeight());
     }
 
     /**
@@ -0,0 +1,303 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The EntityStore class.
+ * Holds the state of a group of entities (e.g. all ghosts in a level) as a structure of arrays:
+ * one array per field, indexed by entity. Loops over many entities, such as collision checks,
+ * then walk plain contiguous arrays instead of following a pointer to every entity object.
+ * <p></p>
+ * Entity objects are views into a store: each entity only remembers its store and index,
+ * and reads and writes its location, size, speed and direction through the store.
+ * <p></p>
+ * An entity can be made inactive (e.g. a ghost eaten during frenzy mode). Inactive entities
+ * keep their index and state, but are skipped by findColliding() and nextActive(), so loops over
+ * the active entities don't spend any time on them.
+ */
+public class EntityStore {
+    // entity types
+    /** The player */
+    public final static int PAC = 0;
+    /** A red ghost (including stationary ones) */
+    public final static int GHOST_RED = 1;
+    /** A blue ghost */
+    public final static int GHOST_BLUE = 2;
+    /** A green ghost */
+    public final static int GHOST_GREEN = 3;
+    /** A pink ghost */
+    public final static int GHOST_PINK = 4;
+    /** A wall */
+    public final static int WALL = 5;
+    /** A dot */
+    public final static int DOT = 6;
+    /** A cherry */
+    public final static int CHERRY = 7;
+    /** A pellet */
+    public final static int PELLET = 8;
+    /** An orange ghost */
+    public final static int GHOST_ORANGE = 9;
+
+    private final static int INITIAL_CAPACITY = 16;
+
+    private double[] x = new double[INITIAL_CAPACITY];
+    private double[] y = new double[INITIAL_CAPACITY];
+    private double[] w = new double[INITIAL_CAPACITY];
+    private double[] h = new double[INITIAL_CAPACITY];
+    private double[] speed = new double[INITIAL_CAPACITY];
+    private int[] direction = new int[INITIAL_CAPACITY];
+    private int[] type = new int[INITIAL_CAPACITY];
+    private final BitSet active = new BitSet(INITIAL_CAPACITY);
+    private int size = 0;
+
+    /**
+     * Adds an entity to the store. It starts active, with speed 0, moving right.
+     * @param type the type of the entity, e.g. EntityStore.DOT
+     * @param x the x coordinate of the entity's top-left corner
+     * @param y the y coordinate of the entity's top-left corner
+     * @param width the entity's width
+     * @param height the entity's height
+     * @return int the index of the new entity
+     */
+    public int add(int type, double x, double y, double width, double height) {
+        if (size == this.x.length) {
+            ensureCapacity(size * 2);
+        }
+        this.x[size] = x;
+        this.y[size] = y;
+        this.w[size] = width;
+        this.h[size] = height;
+        this.type[size] = type;
+        active.set(size);
+        return size++;
+    }
+
+    /**
+     * Makes room for the given number of entities, so that adding that many doesn't have to
+     * grow the arrays again and again.
+     * @param capacity the number of entities the store should hold without growing
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > x.length) {
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.w = Arrays.copyOf(this.w, capacity);
+            this.h = Arrays.copyOf(this.h, capacity);
+            this.speed = Arrays.copyOf(this.speed, capacity);
+            this.direction = Arrays.copyOf(this.direction, capacity);
+            this.type = Arrays.copyOf(this.type, capacity);
+        }
+    }
+
+    /**
+     * Writes the state of every entity that can change while a level is played: location,
+     * speed, direction and whether it's active, e.g. for Level.saveState(). Sizes and types
+     * never change, so they are not written. The arrays are copied element by element rather
+     * than through typed views of the buffer, which would be new objects every call.
+     * @param out the buffer to write stateSize() bytes into
+     */
+    public void writeState(ByteBuffer out) {
+        for (int i = 0; i < size; i++) {
+            out.putDouble(x[i]).putDouble(y[i]).putDouble(speed[i]).putInt(direction[i])
+                    .put(active.get(i) ? (byte) 1 : 0);
+        }
+    }
+
+    /**
+     * Puts back the state written by writeState(). The store must hold the same entities
+     * as when it was written.
+     * @param in the buffer to read stateSize() bytes from
+     */
+    public void readState(ByteBuffer in) {
+        for (int i = 0; i < size; i++) {
+            x[i] = in.getDouble();
+            y[i] = in.getDouble();
+            speed[i] = in.getDouble();
+            direction[i] = in.getInt();
+            active.set(i, in.get() != 0);
+        }
+    }
+
+    /**
+     * A getter for the number of bytes writeState() writes.
+     * @return int the size in bytes.
+     */
+    public int stateSize() {
+        return size * (3 * Double.BYTES + Integer.BYTES + 1);
+    }
+
+    /**
+     * A getter for the number of entities in the store.
+     * @return int the number of entities.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * A getter for an entity's x coordinate.
+     * @param i the index of the entity
+     * @return double the x coordinate of the entity's top-left corner.
+     */
+    public double getX(int i) {
+        return x[i];
+    }
+
+    /**
+     * A getter for an entity's y coordinate.
+     * @param i the index of the entity
+     * @return double the y coordinate of the entity's top-left corner.
+     */
+    public double getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * A getter for an entity's width.
+     * @param i the index of the entity
+     * @return double the entity's width.
+     */
+    public double getWidth(int i) {
+        return w[i];
+    }
+
+    /**
+     * A getter for an entity's height.
+     * @param i the index of the entity
+     * @return double the entity's height.
+     */
+    public double getHeight(int i) {
+        return h[i];
+    }
+
+    /**
+     * A getter for an entity's speed.
+     * @param i the index of the entity
+     * @return double the entity's speed.
+     */
+    public double getSpeed(int i) {
+        return speed[i];
+    }
+
+    /**
+     * A getter for an entity's move direction.
+     * @param i the index of the entity
+     * @return int the entity's direction, one of the MovableEntity.DIR_* codes.
+     */
+    public int getDirection(int i) {
+        return direction[i];
+    }
+
+    /**
+     * A getter for an entity's type.
+     * @param i the index of the entity
+     * @return int the entity's type, e.g. EntityStore.DOT
+     */
+    public int getType(int i) {
+        return type[i];
+    }
+
+    /**
+     * Checks whether an entity is active.
+     * @param i the index of the entity
+     * @return boolean true if the entity is active, false otherwise.
+     */
+    public boolean isActive(int i) {
+        return active.get(i);
+    }
+
+    /**
+     * A setter for whether an entity is active.
+     * @param i the index of the entity
+     * @param isActive false to skip the entity in loops over active entities until it is
+     *                 made active again
+     */
+    public void setActive(int i, boolean isActive) {
+        active.set(i, isActive);
+    }
+
+    /**
+     * Finds the next active entity, for loops over the active entities only:
+     * for (int i = store.nextActive(0); i >= 0; i = store.nextActive(i + 1)).
+     * @param from the index to start looking from (inclusive)
+     * @return int the lowest index of an active entity from the given index, or -1 if none
+     */
+    public int nextActive(int from) {
+        return active.nextSetBit(from);
+    }
+
+    /**
+     * A setter for an entity's location.
+     * @param i the index of the entity
+     * @param x the new x coordinate of the entity's top-left corner
+     * @param y the new y coordinate of the entity's top-left corner
+     */
+    public void setLocation(int i, double x, double y) {
+        this.x[i] = x;
+        this.y[i] = y;
+    }
+
+    /**
+     * A setter for an entity's size.
+     * @param i the index of the entity
+     * @param width the entity's new width
+     * @param height the entity's new height
+     */
+    public void setSize(int i, double width, double height) {
+        this.w[i] = width;
+        this.h[i] = height;
+    }
+
+    /**
+     * A setter for an entity's speed.
+     * @param i the index of the entity
+     * @param speed the entity's new speed
+     */
+    public void setSpeed(int i, double speed) {
+        this.speed[i] = speed;
+    }
+
+    /**
+     * A setter for an entity's move direction.
+     * @param i the index of the entity
+     * @param direction the entity's new direction, one of the MovableEntity.DIR_* codes
+     */
+    public void setDirection(int i, int direction) {
+        this.direction[i] = direction;
+    }
+
+    /**
+     * Checks whether an entity intersects a box. Uses the same rule as Bagel's
+     * Rectangle.intersects(), i.e. boxes that only touch at the edges do not intersect.
+     * @param i the index of the entity
+     * @param boxX the left of the box
+     * @param boxY the top of the box
+     * @param boxWidth the width of the box
+     * @param boxHeight the height of the box
+     * @return boolean true if they intersect, false otherwise
+     */
+    public boolean intersects(int i, double boxX, double boxY, double boxWidth, double boxHeight) {
+        return boxX < x[i] + w[i] && boxX + boxWidth > x[i]
+                && boxY < y[i] + h[i] && boxY + boxHeight > y[i];
+    }
+
+    /**
+     * Finds the first active entity in the store that intersects a box.
+     * @param boxX the left of the box
+     * @param boxY the top of the box
+     * @param boxWidth the width of the box
+     * @param boxHeight the height of the box
+     * @return int the lowest index of an active entity intersecting the box, or -1 if there
+     *         is none
+     */
+    public int findColliding(double boxX, double boxY, double boxWidth, double boxHeight) {
+        double boxX2 = boxX + boxWidth;
+        double boxY2 = boxY + boxHeight;
+        for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i + 1)) {
+            if (boxX < x[i] + w[i] && boxX2 > x[i] && boxY < y[i] + h[i] && boxY2 > y[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The FastForwardCheck class.
+ * Plays every level of the manifest with BatchRunner's bot twice per seed, once tick by tick
+ * and once fast forwarded with Level.fastForward(), and checks that both play out exactly
+ * the same: the same number of lives lost, the same number of ticks, and the same state at
+ * the end (see Level.saveState()). Unlike a batch run, a run doesn't end when the player is
+ * out of lives, so every ghost pac runs into within the tick limit is counted.
+ * <p></p>
+ * Running this class checks that fast forwarding still matches tick(), e.g. after a gameplay
+ * change.
+ * Usage: java FastForwardCheck [ticks per step] [runs per level] [ticks per run]
+ */
+public class FastForwardCheck {
+    private final static int DEFAULT_STEP = 30;
+    private final static int DEFAULT_RUNS = 200;
+    private final static long DEFAULT_MAX_TICKS = 6000;
+
+    // how one run played out
+    private static class Run {
+        private int livesLost;
+        private long ticks;
+        private ByteBuffer state;
+    }
+
+    /**
+     * Plays one run with the bot, up to the tick limit or until the level is won.
+     * @param level the level to play
+     * @param seed the seed of the bot
+     * @param maxTicks the most ticks the run may take
+     * @param step the most ticks to advance by at a time (1 to play tick by tick)
+     * @return Run how the run played out
+     */
+    private static Run play(Level level, long seed, long maxTicks, int step) {
+        SplittableRandom bot = new SplittableRandom(seed);
+        Run run = new Run();
+        int keys = 0;
+        while (level.getTicks() < maxTicks) {
+            long ticks = level.getTicks();
+            if (ticks % BatchRunner.BOT_TURN_TICKS == 0) {
+                keys = BatchRunner.BOT_KEYS[bot.nextInt(BatchRunner.BOT_KEYS.length)];
+            }
+            // stop at the next key change and at the tick limit
+            long ticksToTurn = BatchRunner.BOT_TURN_TICKS - ticks % BatchRunner.BOT_TURN_TICKS;
+            int n = (int) Math.min(Math.min(step, ticksToTurn), maxTicks - ticks);
+            char outcome = step == 1 ? level.tick(keys) : level.fastForward(keys, n);
+            if (outcome == Level.LOSE) {
+                run.livesLost++;
+            } else if (outcome == Level.WIN) {
+                break;
+            }
+        }
+        run.ticks = level.getTicks();
+        run.state = level.newStateBuffer();
+        level.saveState(run.state);
+        return run;
+    }
+
+    /**
+     * The entry point for checking fast forwarding. Prints the runs that played out
+     * differently, then the lives lost both ways.
+     */
+    public static void main(String[] args) {
+        int step = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_STEP;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+        long maxTicks = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_MAX_TICKS;
+        LevelManifest manifest;
+        try {
+            manifest = new LevelManifest(LevelManifest.DEFAULT_FILE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        for (int number = 0; number < manifest.size(); number++) {
+            final int level = number;
+            long start = System.nanoTime();
+            List<Run[]> pairs = IntStream.range(0, runs).parallel().mapToObj(seed -> new Run[] {
+                    play(manifest.create(level, seed), seed, maxTicks, 1),
+                    play(manifest.create(level, seed), seed, maxTicks, step)
+            }).collect(Collectors.toList());
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            List<String> mismatches = new ArrayList<>();
+            int ticked = 0, fastForwarded = 0;
+            for (int seed = 0; seed < runs; seed++) {
+                Run tick = pairs.get(seed)[0], fast = pairs.get(seed)[1];
+                ticked += tick.livesLost;
+                fastForwarded += fast.livesLost;
+                if (tick.livesLost != fast.livesLost || tick.ticks != fast.ticks
+                        || !tick.state.equals(fast.state)) {
+                    mismatches.add("level " + level + " run " + seed + ": ticked lost "
+                            + tick.livesLost + " lives in " + tick.ticks + " ticks, fast forwarded "
+                            + fast.livesLost + " in " + fast.ticks);
+                }
+            }
+
+            for (String mismatch : mismatches) {
+                System.out.println(mismatch);
+            }
+            System.out.printf("level %d: %d of %d runs played the same, %d lives lost ticked and "
+                    + "%d fast forwarded by %d ticks, in %.2f s%n", level,
+                    runs - mismatches.size(), runs, ticked, fastForwarded, step, seconds);
+        }
+    }
+}
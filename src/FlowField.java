@@ -0,0 +1,183 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The FlowField class.
+ * A distance field over the cells of a level's wall grid: for every open cell (one that no
+ * wall intersects), how many cells away from the target (pac) it is, and which way to step to
+ * get one cell closer. The field is shared by every chasing ghost in the level, so a ghost
+ * reads its next move from its cell in constant time instead of searching for a path itself.
+ * <p></p>
+ * The field is only rebuilt, with one breadth-first search from the target's cell, when the
+ * target moves into another cell. Pac takes many ticks to cross a cell, so most ticks cost
+ * nothing however many ghosts are chasing. The search reuses the same arrays every time,
+ * so rebuilding the field never creates any garbage.
+ */
+public class FlowField {
+    /** No direction (or no cell), e.g. the cell is the target's, or can't reach it */
+    public final static int NONE = -1;
+    // directions are the MovableEntity.DIR_* codes, with their steps in columns and rows
+    private final static int[] STEP_COL = MovableEntity.DX;
+    private final static int[] STEP_ROW = MovableEntity.DY;
+    private final static int UNREACHED = -1;
+
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    private final BitSet open;
+
+    // by cell: steps to the target, and the direction of the first step there
+    private final int[] distance;
+    private final byte[] toward;
+    private final int[] queue;
+    private int target = NONE;
+
+    /**
+     * The constructor for FlowField. Finds the open cells of the grid; the field itself is
+     * built by the first update().
+     * @param walls the walls of the level
+     */
+    public FlowField(WallGrid walls) {
+        originX = walls.getOriginX();
+        originY = walls.getOriginY();
+        cellSize = walls.getCellSize();
+        cols = walls.getCols();
+        rows = walls.getRows();
+        open = new BitSet(cols * rows);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                if (!walls.intersects(originX + c * cellSize, originY + r * cellSize,
+                        cellSize, cellSize)) {
+                    open.set(r * cols + c);
+                }
+            }
+        }
+        distance = new int[cols * rows];
+        toward = new byte[cols * rows];
+        queue = new int[cols * rows];
+        Arrays.fill(distance, UNREACHED);
+        Arrays.fill(toward, (byte) NONE);
+    }
+
+    /**
+     * Moves the target of the field to a point, rebuilding the field if the point is in
+     * another cell than before. A point outside the grid or in a closed cell keeps the old field.
+     * @param x the x coordinate of the target, e.g. the centre of pac
+     * @param y the y coordinate of the target
+     */
+    public void update(double x, double y) {
+        int cell = cellAt(x, y);
+        if (cell == NONE || cell == target || !open.get(cell)) return;
+        target = cell;
+
+        // breadth-first search outwards from the target: a cell found from its neighbour
+        // steps back towards that neighbour to get closer
+        Arrays.fill(distance, UNREACHED);
+        Arrays.fill(toward, (byte) NONE);
+        int head = 0, tail = 0;
+        distance[cell] = 0;
+        queue[tail++] = cell;
+        while (head < tail) {
+            int from = queue[head++];
+            int c = from % cols, r = from / cols;
+            for (int dir = 0; dir < STEP_COL.length; dir++) {
+                int nc = c + STEP_COL[dir], nr = r + STEP_ROW[dir];
+                if (nc < 0 || nc >= cols || nr < 0 || nr >= rows) continue;
+                int next = nr * cols + nc;
+                if (distance[next] != UNREACHED || !open.get(next)) continue;
+                distance[next] = distance[from] + 1;
+                toward[next] = (byte) MovableEntity.reverse(dir);
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    /**
+     * Finds the cell a point is in.
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @return int the cell, or NONE if the point is outside the grid.
+     */
+    public int cellAt(double x, double y) {
+        int c = (int) Math.floor((x - originX) / cellSize);
+        int r = (int) Math.floor((y - originY) / cellSize);
+        if (c < 0 || c >= cols || r < 0 || r >= rows) return NONE;
+        return r * cols + c;
+    }
+
+    /**
+     * Gets the direction to step in from a cell to get closer to the target.
+     * @param cell the cell
+     * @return int the MovableEntity.DIR_* code of the direction, or NONE if the cell is the
+     *         target's or can't reach it.
+     */
+    public int toward(int cell) {
+        return toward[cell];
+    }
+
+    /**
+     * Gets the direction to step in from a cell to get away from the target: the neighbouring
+     * cell furthest away. At a cell no neighbour is further from (e.g. the far end of a
+     * corridor), that is the furthest neighbour other than the one just come from, so
+     * something running away never gets stuck there; only in a dead end does it go back.
+     * @param cell the cell
+     * @param from the cell just come from, or NONE
+     * @return int the MovableEntity.DIR_* code of the direction, or NONE if the cell can't
+     *         reach the target or has no open neighbour.
+     */
+    public int away(int cell, int from) {
+        if (distance[cell] == UNREACHED) return NONE;
+        // the furthest neighbour if it's further than this cell, otherwise the furthest
+        // one that isn't where we came from, otherwise back
+        int further = NONE, furtherDistance = distance[cell];
+        int other = NONE, otherDistance = UNREACHED, back = NONE;
+        for (int dir = 0; dir < STEP_COL.length; dir++) {
+            int next = neighbour(cell, dir);
+            if (next == NONE || distance[next] == UNREACHED) continue;
+            if (distance[next] > furtherDistance) {
+                further = dir;
+                furtherDistance = distance[next];
+            }
+            if (next == from) {
+                back = dir;
+            } else if (distance[next] > otherDistance) {
+                other = dir;
+                otherDistance = distance[next];
+            }
+        }
+        if (further != NONE) return further;
+        return other != NONE ? other : back;
+    }
+
+    /**
+     * Gets the cell next to a cell.
+     * @param cell the cell
+     * @param dir the MovableEntity.DIR_* code of the direction of the neighbour
+     * @return int the neighbouring cell, or NONE if it's outside the grid.
+     */
+    public int neighbour(int cell, int dir) {
+        int c = cell % cols + STEP_COL[dir], r = cell / cols + STEP_ROW[dir];
+        if (c < 0 || c >= cols || r < 0 || r >= rows) return NONE;
+        return r * cols + c;
+    }
+
+    /**
+     * Gets the x coordinate of the centre of a cell.
+     * @param cell the cell
+     * @return double the centre's x coordinate.
+     */
+    public double centreX(int cell) {
+        return originX + (cell % cols + 0.5) * cellSize;
+    }
+
+    /**
+     * Gets the y coordinate of the centre of a cell.
+     * @param cell the cell
+     * @return double the centre's y coordinate.
+     */
+    public double centreY(int cell) {
+        return originY + (cell / cols + 0.5) * cellSize;
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The FrameProfiler class.
+ * Measures how long each phase of a frame takes (e.g. moving the ghosts), to find out which part
+ * of a frame is blowing the frame budget.
+ * <p></p>
+ * The time spent in a phase is added up over a frame, and at the end of the frame it goes into
+ * that phase's histogram. The histograms have log-linear buckets (8 per power of two), so
+ * recording a sample is a few bit operations and an array increment, and percentiles are
+ * accurate to within 12.5%. The maximum is kept exactly.
+ */
+public class FrameProfiler {
+    // phases
+    /** Drawing all entities */
+    public final static int DRAW = 0;
+    /** Moving the ghosts */
+    public final static int GHOSTS = 1;
+    /** Moving pac */
+    public final static int PAC = 2;
+    /** Collisions between pac and everything else */
+    public final static int COLLISION = 3;
+    /** Drawing text, score and hearts */
+    public final static int HUD = 4;
+    /** The whole frame */
+    public final static int FRAME = 5;
+    private final static String[] PHASE_NAMES = {"draw", "ghosts", "pac", "collision", "hud",
+            "frame"};
+    private final static int PHASES = PHASE_NAMES.length;
+
+    /** A profiler that records nothing, for when profiling is off */
+    public final static FrameProfiler DISABLED = new FrameProfiler(false);
+
+    private final static int SUB_BUCKET_BITS = 3;
+    private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private final static int BUCKETS = 64 * SUB_BUCKETS;
+    private final static double NANOS_PER_MS = 1e6;
+
+    private final boolean enabled;
+    private final long[][] counts = new long[PHASES][BUCKETS];
+    private final long[] samples = new long[PHASES];
+    private final long[] max = new long[PHASES];
+    private final long[] frameTotals = new long[PHASES];
+    private final boolean[] ranThisFrame = new boolean[PHASES];
+
+    /**
+     * The constructor for FrameProfiler.
+     * @param enabled whether to record anything at all
+     */
+    public FrameProfiler(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts timing a phase.
+     * @return long the start time, to be passed to stop()
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Stops timing a phase, and adds the time since start() to this frame's time for the phase.
+     * @param phase the phase, e.g. FrameProfiler.GHOSTS
+     * @param start the value returned by start()
+     */
+    public void stop(int phase, long start) {
+        if (!enabled) return;
+        frameTotals[phase] += System.nanoTime() - start;
+        ranThisFrame[phase] = true;
+    }
+
+    /**
+     * Ends a frame: the time of every phase that ran in this frame goes into its histogram.
+     */
+    public void endFrame() {
+        if (!enabled) return;
+        for (int phase = 0; phase < PHASES; phase++) {
+            if (ranThisFrame[phase]) {
+                record(phase, frameTotals[phase]);
+                frameTotals[phase] = 0;
+                ranThisFrame[phase] = false;
+            }
+        }
+    }
+
+    private void record(int phase, long nanos) {
+        counts[phase][bucket(nanos)]++;
+        samples[phase]++;
+        if (nanos > max[phase]) max[phase] = nanos;
+    }
+
+    // values below SUB_BUCKETS get their own bucket. Above that, every power of two is split
+    // into SUB_BUCKETS buckets by the bits after the highest one.
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) Math.max(0, nanos);
+        int msb = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (msb - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // the highest value that falls into a bucket
+    private static long bucketTop(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int msb = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (msb - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Estimates a percentile of a phase's time per frame.
+     * @param phase the phase, e.g. FrameProfiler.GHOSTS
+     * @param percentile the percentile, between 0 and 100
+     * @return double the time in milliseconds, or 0 if the phase never ran
+     */
+    public double percentile(int phase, double percentile) {
+        long target = (long) Math.ceil(samples[phase] * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS && target > 0; bucket++) {
+            seen += counts[phase][bucket];
+            if (seen >= target) {
+                return Math.min(bucketTop(bucket), max[phase]) / NANOS_PER_MS;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * A getter for the longest time a phase took in one frame.
+     * @param phase the phase, e.g. FrameProfiler.GHOSTS
+     * @return double the time in milliseconds
+     */
+    public double max(int phase) {
+        return max[phase] / NANOS_PER_MS;
+    }
+
+    /**
+     * Summarises every phase as a table, one line per phase.
+     * @return String the table, with p50, p99 and max in milliseconds
+     */
+    public String summary() {
+        StringBuilder text = new StringBuilder(String.format("%-10s %8s %8s %8s %8s%n",
+                "PHASE", "FRAMES", "P50", "P99", "MAX"));
+        for (int phase = 0; phase < PHASES; phase++) {
+            text.append(String.format("%-10s %8d %8.3f %8.3f %8.3f%n", PHASE_NAMES[phase],
+                    samples[phase], percentile(phase, 50), percentile(phase, 99), max(phase)));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes the summary to a file.
+     * @param file the file to write to (it is overwritten)
+     * @throws IOException if the file can't be written
+     */
+    public void dump(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.print(summary());
+        }
+    }
+}
@@ -1,12 +1,11 @@
 //import bagel.*;
-import bagel.Image;
 import bagel.util.Point;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 
 /** The Ghost class. A subclass to MovableEntity.
  * This class is abstract, since there are no "generic" ghosts -- a ghost must be either
- * red, blue, pink, or green.
+ * red, blue, pink, green, or orange.
  * However, all ghosts have one thing in common: the frenzy mode,
  * whose implementation can be seen in activateFrenzy() and deactivateFrenzy() methods below.
  */
@@ -14,9 +13,9 @@ public abstract class Ghost extends MovableEntity {
     // the non-frenzy speed, which is required because subtracting -0.5 for frenzy
     // then adding 0.5 after frenzy ends won't work if the non-frenzy speed is less than 0.5
     private final double normalSpeed;
-    private final Image ghostImg;
+    private final Sprite ghostImg;
     private final static double FRENZY_SPEED = 0.5;
-    private final Image GHOST_FRENZY_IMG = new Image("res/ghostFrenzy.png");
+    private final static Sprite GHOST_FRENZY_IMG = Assets.sprite("res/ghostFrenzy.png");
 
     /** Score for player if the ghost is eaten during frenzy mode. */
     public final static int SCORE = 30;
@@ -24,12 +23,14 @@ public abstract class Ghost extends MovableEntity {
 
     /**
      * The constructor for Ghost.
-     * @param image the image of this ghost
+     * @param image the sprite of this ghost
+     * @param store the store holding the state of this ghost
+     * @param type the type of this ghost, e.g. EntityStore.GHOST_RED
      * @param loc the starting location of this ghost
      * @param speed the moving speed of this ghost
      */
-    public Ghost(Image image, Point loc, double speed) {
-        super(image, loc, speed);
+    public Ghost(Sprite image, EntityStore store, int type, Point loc, double speed) {
+        super(image, store, type, loc, speed);
         ghostImg = image;
         normalSpeed = speed;
     }
@@ -37,7 +38,7 @@ public abstract class Ghost extends MovableEntity {
 
     /** Changes ghost behaviour for frenzy mode. */
     public void activateFrenzy() {
-        super.setImage(GHOST_FRENZY_IMG);
+        super.setSprite(GHOST_FRENZY_IMG);
         double newSpeed = normalSpeed - FRENZY_SPEED;
         if (newSpeed < 0) {
             super.setSpeed(0);
@@ -46,26 +47,82 @@ public abstract class Ghost extends MovableEntity {
         }
     }
 
-    /** Reverts ghost behaviour back to normal after frenzy mode ends. */
+    /** Reverts ghost behaviour back to normal after frenzy mode ends.
+     * Ghosts eaten during frenzy are respawned by the level.
+     */
     public void deactivateFrenzy() {
-        // if the ghost has been eaten during frenzy, reset to starting position
-        if (super.getLocation().equals(Entity.OFF_SCREEN)) {
-            super.moveToStart();
-        }
-
         // revert everything to normal
-        super.setImage(ghostImg);
+        super.setSprite(ghostImg);
         super.setSpeed(normalSpeed);
     }
 
+    /**
+     * Writes the state of this ghost that isn't in its store, including whether it looks
+     * frenzied.
+     * @param out the buffer to write stateSize() bytes into
+     */
+    @Override
+    public void writeState(ByteBuffer out) {
+        super.writeState(out);
+        out.put(getSprite() == GHOST_FRENZY_IMG ? (byte) 1 : 0);
+    }
+
+    /**
+     * Puts back the state written by writeState().
+     * @param in the buffer to read stateSize() bytes from
+     */
+    @Override
+    public void readState(ByteBuffer in) {
+        super.readState(in);
+        super.setSprite(in.get() != 0 ? GHOST_FRENZY_IMG : ghostImg);
+    }
+
+    /**
+     * A getter for the number of bytes writeState() writes.
+     * @return int the size in bytes.
+     */
+    @Override
+    public int stateSize() {
+        return super.stateSize() + 1;
+    }
+
+    /**
+     * Picks a new direction for this ghost when it hits a wall. Only RANDOM_TURN ghosts turn
+     * this way (see GhostKernel), and every ghost with that behaviour must override this.
+     */
+    void generateDir() {
+        throw new UnsupportedOperationException(getClass().getName()
+                + " doesn't pick new directions");
+    }
+
+    /**
+     * A getter for how this ghost moves, so that the level can move all ghosts that behave the
+     * same in one batch (see GhostKernel).
+     * @return int one of the GhostKernel behaviours; OTHER (the default) if the ghost can only
+     *         be moved one by one with move().
+     */
+    public int getBehaviour() {
+        return GhostKernel.OTHER;
+    }
+
     /**
      * Moves ghost based on its specified behaviour.
      * This is a template method, with doMove() as the hook method below.
      * @param walls the walls preventing this ghost from moving through
+     * @param field the level's distance field to pac, shared by all ghosts that chase pac
+     *              (null if no ghost in the level chases pac)
      */
-    public void move(ArrayList<Wall> walls) {
-        doMove(walls);
+    public void move(WallGrid walls, FlowField field) {
+        doMove(walls, field);
     }
 
-    protected abstract void doMove(ArrayList<Wall> walls);
+    /**
+     * Moves ghost by one tick. Ghosts of the batched behaviours (see getBehaviour()) are moved
+     * the way GhostKernel moves them; only OTHER ghosts need to override this.
+     * @param walls the walls preventing this ghost from moving through
+     * @param field the level's distance field to pac (null if there is none)
+     */
+    protected void doMove(WallGrid walls, FlowField field) {
+        GhostKernel.move(this, walls, 1);
+    }
 }
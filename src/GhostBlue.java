@@ -1,9 +1,5 @@
-import bagel.Image;
 import bagel.util.Point;
 
-import java.util.ArrayList;
-
-
 /**
  * The blue ghost.
  * Unlike red ghosts, the blue ghost only has one behaviour:
@@ -12,24 +8,24 @@ import java.util.ArrayList;
  */
 public class GhostBlue extends Ghost {
     private final static int SPEED = 2;
-    private final static Image IMAGE = new Image("res/ghostBlue.png");
-    private double direction = MovableEntity.FACING_DOWN;
+    private final static Sprite IMAGE = Assets.sprite("res/ghostBlue.png");
 
     /**
      Constructor.
+     * @param store the store holding the state of the ghost
      * @param loc the initial location of the ghost
      */
-    public GhostBlue(Point loc) {
-        super(IMAGE, loc, SPEED);
+    public GhostBlue(EntityStore store, Point loc) {
+        super(IMAGE, store, EntityStore.GHOST_BLUE, loc, SPEED);
+        setDirection(MovableEntity.FACING_DOWN);
     }
 
     /**
-     * Moves ghost based on its specified behaviour.
+     * A getter for how this ghost moves.
+     * @return int GhostKernel.BOUNCE_VERTICAL.
      */
-    protected void doMove(ArrayList<Wall> walls) {
-        // adding by pi means reversing the direction, e.g. from right to left or down to up
-        if (!moveToEmpty(direction, walls, false)) {
-            direction = (direction + Math.PI) % (2 * Math.PI);
-        }
+    @Override
+    public int getBehaviour() {
+        return GhostKernel.BOUNCE_VERTICAL;
     }
 }
@@ -1,9 +1,5 @@
-import bagel.Image;
 import bagel.util.Point;
 
-import java.util.ArrayList;
-import java.util.Random;
-
 
 /**
  * The green ghost.
@@ -16,34 +12,37 @@ import java.util.Random;
  */
 public class GhostGreen extends Ghost {
     private final static int SPEED = 4;
-    private final static Image IMAGE = new Image("res/ghostGreen.png");
-    private double direction;
-    private Random r = new Random();
+    private final static Sprite IMAGE = Assets.sprite("res/ghostGreen.png");
+    private final static double[] MOVES = {MovableEntity.FACING_RIGHT, MovableEntity.FACING_DOWN};
+    private final RandomStream r;
 
     /**
      Constructor.
+     * @param store the store holding the state of the ghost
      * @param loc the initial location of the ghost
+     * @param r the random stream of this ghost
      */
-    public GhostGreen(Point loc) {
-        super(IMAGE, loc, SPEED);
-        generateDir();
+    public GhostGreen(EntityStore store, Point loc, RandomStream r) {
+        super(IMAGE, store, EntityStore.GHOST_GREEN, loc, SPEED);
+        this.r = r;
+        generateStartDir();
     }
 
     /**
      * Generates initial ghost direction.
      */
-    private void generateDir() {
-        double[] MOVES = {MovableEntity.FACING_RIGHT, MovableEntity.FACING_DOWN};
-        direction = MOVES[r.nextInt(MOVES.length)];
+    private void generateStartDir() {
+        setDirection(MOVES[r.nextInt(MOVES.length)]);
     }
 
     /**
-     * Moves ghost based on its specified behaviour.
+     * A getter for how this ghost moves, which depends on the direction it started in.
+     * @return int GhostKernel.BOUNCE_HORIZONTAL or GhostKernel.BOUNCE_VERTICAL.
      */
-    protected void doMove(ArrayList<Wall> walls) {
-        // adding by pi means reversing the direction, e.g. from right to left or down to up
-        if (!moveToEmpty(direction, walls, false)) {
-            direction = (direction + Math.PI) % (2 * Math.PI);
-        }
+    @Override
+    public int getBehaviour() {
+        return getDirection() == MovableEntity.FACING_RIGHT || getDirection() ==
+                MovableEntity.FACING_LEFT ? GhostKernel.BOUNCE_HORIZONTAL
+                : GhostKernel.BOUNCE_VERTICAL;
     }
 }
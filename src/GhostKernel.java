@@ -0,0 +1,166 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The GhostKernel class.
+ * Moves all ghosts of a level in one go, grouped by how they move. Most ghosts move in a
+ * straight line until they hit a wall, so instead of calling every ghost's move() (and
+ * comparing direction angles in each), each group is moved in one tight loop over the ghost
+ * store, with the move read off the DX/DY tables of its direction code.
+ * <p></p>
+ * The groups:
+ * <ul>
+ *     <li>STATIONARY ghosts (stationary red ghosts) never move, so they are in no loop and
+ *     cost nothing per tick</li>
+ *     <li>BOUNCE_HORIZONTAL and BOUNCE_VERTICAL ghosts (red, blue and green ghosts) turn 180
+ *     whenever they hit a wall</li>
+ *     <li>RANDOM_TURN ghosts (pink ghosts) pick a new random direction whenever they hit a
+ *     wall</li>
+ *     <li>OTHER ghosts (e.g. orange ghosts) are moved one by one with move(), a tick at a
+ *     time (see updateOthers())</li>
+ * </ul>
+ * Ghosts are moved exactly the same as their move() would, so the order and outcome of a
+ * level doesn't change. The kernel can also move ghosts by many ticks at once (see
+ * Level.fastForward()): a ghost then sweeps straight to the next wall in its way, instead of
+ * being moved and checked tick by tick.
+ */
+public class GhostKernel {
+    /** A ghost that never moves */
+    public final static int STATIONARY = 0;
+    /** A ghost that moves left and right, turning 180 when it hits a wall */
+    public final static int BOUNCE_HORIZONTAL = 1;
+    /** A ghost that moves up and down, turning 180 when it hits a wall */
+    public final static int BOUNCE_VERTICAL = 2;
+    /** A ghost that picks a new direction with its generateDir() when it hits a wall */
+    public final static int RANDOM_TURN = 3;
+    /** A ghost that has its own move() */
+    public final static int OTHER = 4;
+
+    private final EntityStore store;
+    // store indices of the ghosts of every group
+    private final int[] horizontal;
+    private final int[] vertical;
+    private final int[] randomTurn;
+    private final Ghost[] randomTurnGhosts;
+    private final Ghost[] others;
+
+    /**
+     * The constructor for GhostKernel. Sorts the ghosts into their groups, in their order in
+     * the store.
+     * @param store the store holding the state of the ghosts
+     * @param ghosts the ghosts, which must all be in the store
+     */
+    public GhostKernel(EntityStore store, List<Ghost> ghosts) {
+        this.store = store;
+        List<Ghost> horizontalList = new ArrayList<>();
+        List<Ghost> verticalList = new ArrayList<>();
+        List<Ghost> randomList = new ArrayList<>();
+        List<Ghost> otherList = new ArrayList<>();
+        for (Ghost ghost : ghosts) {
+            int behaviour = ghost.getBehaviour();
+            if (behaviour == BOUNCE_HORIZONTAL) {
+                horizontalList.add(ghost);
+            } else if (behaviour == BOUNCE_VERTICAL) {
+                verticalList.add(ghost);
+            } else if (behaviour == RANDOM_TURN) {
+                randomList.add(ghost);
+            } else if (behaviour == OTHER) {
+                otherList.add(ghost);
+            }
+        }
+        horizontal = indices(horizontalList);
+        vertical = indices(verticalList);
+        randomTurn = indices(randomList);
+        randomTurnGhosts = randomList.toArray(new Ghost[0]);
+        others = otherList.toArray(new Ghost[0]);
+    }
+
+    private static int[] indices(List<Ghost> ghosts) {
+        int[] indices = new int[ghosts.size()];
+        for (int k = 0; k < indices.length; k++) {
+            indices[k] = ghosts.get(k).getIndex();
+        }
+        return indices;
+    }
+
+    /**
+     * Moves every active ghost that isn't in the OTHER group by the given number of ticks.
+     * @param walls the walls preventing ghosts from moving through
+     * @param ticks the number of ticks to move the ghosts by
+     */
+    public void update(WallGrid walls, int ticks) {
+        for (int i : horizontal) {
+            if (store.isActive(i)) bounce(store, i, walls, ticks);
+        }
+        for (int i : vertical) {
+            if (store.isActive(i)) bounce(store, i, walls, ticks);
+        }
+        for (int k = 0; k < randomTurn.length; k++) {
+            if (store.isActive(randomTurn[k])) turnRandomly(randomTurnGhosts[k], walls, ticks);
+        }
+    }
+
+    /**
+     * Moves every active ghost in the OTHER group by one tick. These ghosts go by the
+     * distance field, i.e. by where pac is in that tick, so they can only be moved a tick
+     * at a time.
+     * @param walls the walls preventing ghosts from moving through
+     * @param field the level's distance field to pac, or null if there is none
+     */
+    public void updateOthers(WallGrid walls, FlowField field) {
+        for (Ghost ghost : others) {
+            if (ghost.isActive()) {
+                ghost.move(walls, field);
+            }
+        }
+    }
+
+    /**
+     * Moves one ghost by the given number of ticks, exactly as update() moves the ghosts of
+     * its group. Ghost.move() uses this for every ghost that isn't in the OTHER group, so that
+     * each behaviour is only written once.
+     * @param ghost the ghost to move
+     * @param walls the walls preventing the ghost from moving through
+     * @param ticks the number of ticks to move the ghost by
+     */
+    static void move(Ghost ghost, WallGrid walls, int ticks) {
+        int behaviour = ghost.getBehaviour();
+        if (behaviour == BOUNCE_HORIZONTAL || behaviour == BOUNCE_VERTICAL) {
+            bounce(ghost.getStore(), ghost.getIndex(), walls, ticks);
+        } else if (behaviour == RANDOM_TURN) {
+            turnRandomly(ghost, walls, ticks);
+        }
+    }
+
+    // moves a ghost, turning it 180 whenever it hits a wall
+    private static void bounce(EntityStore store, int i, WallGrid walls, int ticks) {
+        for (int left = ticks; left > 0; ) {
+            left -= step(store, i, walls, left);
+            if (left > 0) {
+                // hit a wall: turning takes up that tick
+                store.setDirection(i, MovableEntity.reverse(store.getDirection(i)));
+                left--;
+            }
+        }
+    }
+
+    // moves a ghost, picking a new direction whenever it hits a wall
+    private static void turnRandomly(Ghost ghost, WallGrid walls, int ticks) {
+        EntityStore store = ghost.getStore();
+        int i = ghost.getIndex();
+        for (int left = ticks; left > 0; ) {
+            left -= step(store, i, walls, left);
+            if (left > 0) {
+                // hit a wall: turning takes up that tick
+                ghost.generateDir();
+                left--;
+            }
+        }
+    }
+
+    // moves a ghost by its speed in its direction up to the given number of times, stopping
+    // before it would hit a wall. returns the number of moves made
+    private static int step(EntityStore store, int i, WallGrid walls, int steps) {
+        return MovableEntity.moveToEmpty(store, i, store.getDirection(i), walls, steps);
+    }
+}
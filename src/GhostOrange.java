@@ -0,0 +1,139 @@
+import bagel.util.Point;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The orange ghost ("GhostOrange" in world files).
+ * Unlike the other ghosts, the orange ghost goes after pac. It moves from the centre of one
+ * cell of the wall grid to the next at a speed of 2, and in the centre of every cell it
+ * reads which way to turn off the level's shared distance field (see FlowField).
+ * It takes turns chasing pac (taking the shortest path towards it) and scattering
+ * (taking the longest way away from it). During frenzy mode it always runs away.
+ */
+public class GhostOrange extends Ghost {
+    private final static int SPEED = 2;
+    private final static Sprite IMAGE = Assets.sprite("res/ghostOrange.png");
+    // ticks spent chasing, then scattering, in turn
+    private final static int CHASE_TICKS = 1200;
+    private final static int SCATTER_TICKS = 420;
+    private int modeCounter = 0;
+    private boolean frenzy = false;
+    // the cell whose centre the ghost is moving to, and the one it came from
+    private int targetCell = FlowField.NONE;
+    private int previousCell = FlowField.NONE;
+
+    /**
+     * Constructor.
+     * @param store the store holding the state of the ghost
+     * @param loc the initial location of the ghost
+     */
+    public GhostOrange(EntityStore store, Point loc) {
+        super(IMAGE, store, EntityStore.GHOST_ORANGE, loc, SPEED);
+    }
+
+    /** Makes the ghost run away from pac during frenzy mode. */
+    @Override
+    public void activateFrenzy() {
+        super.activateFrenzy();
+        frenzy = true;
+    }
+
+    /** Makes the ghost chase pac again after frenzy mode ends. */
+    @Override
+    public void deactivateFrenzy() {
+        super.deactivateFrenzy();
+        frenzy = false;
+    }
+
+    /** Moves ghost to its starting position, from where it finds its way again. */
+    @Override
+    public void moveToStart() {
+        super.moveToStart();
+        targetCell = FlowField.NONE;
+        previousCell = FlowField.NONE;
+    }
+
+    /**
+     * Writes the state of this ghost that isn't in its store, including its chase/scatter
+     * timing and the cell it's heading for.
+     * @param out the buffer to write stateSize() bytes into
+     */
+    @Override
+    public void writeState(ByteBuffer out) {
+        super.writeState(out);
+        out.putInt(modeCounter);
+        out.putInt(targetCell);
+        out.putInt(previousCell);
+        out.put(frenzy ? (byte) 1 : 0);
+    }
+
+    /**
+     * Puts back the state written by writeState().
+     * @param in the buffer to read stateSize() bytes from
+     */
+    @Override
+    public void readState(ByteBuffer in) {
+        super.readState(in);
+        modeCounter = in.getInt();
+        targetCell = in.getInt();
+        previousCell = in.getInt();
+        frenzy = in.get() != 0;
+    }
+
+    /**
+     * A getter for the number of bytes writeState() writes.
+     * @return int the size in bytes.
+     */
+    @Override
+    public int stateSize() {
+        return super.stateSize() + 3 * Integer.BYTES + 1;
+    }
+
+    /**
+     * Moves ghost based on its specified behaviour.
+     */
+    protected void doMove(WallGrid walls, FlowField field) {
+        modeCounter = (modeCounter + 1) % (CHASE_TICKS + SCATTER_TICKS);
+        if (field == null) return;
+        double halfWidth = getWidth() / 2, halfHeight = getHeight() / 2;
+        double x = getX(), y = getY();
+
+        // starting out, the ghost first lines up with the centre of the cell it's in
+        if (targetCell == FlowField.NONE) {
+            targetCell = field.cellAt(x + halfWidth, y + halfHeight);
+            if (targetCell == FlowField.NONE) return;
+        }
+        double targetX = field.centreX(targetCell) - halfWidth;
+        double targetY = field.centreY(targetCell) - halfHeight;
+
+        // in the centre of a cell, the ghost turns the way the field says
+        if (x == targetX && y == targetY) {
+            boolean chasing = !frenzy && modeCounter < CHASE_TICKS;
+            int dir = chasing ? field.toward(targetCell) : field.away(targetCell, previousCell);
+            if (dir == FlowField.NONE) return;
+            setDirection(MovableEntity.toFacing(dir));
+            previousCell = targetCell;
+            targetCell = field.neighbour(targetCell, dir);
+            targetX = field.centreX(targetCell) - halfWidth;
+            targetY = field.centreY(targetCell) - halfHeight;
+        }
+
+        // move towards the centre, without going past it
+        double speed = getSpeed();
+        double newX = approach(x, targetX, speed);
+        double newY = approach(y, targetY, speed - Math.abs(newX - x));
+        if (walls.intersects(newX, newY, getWidth(), getHeight())) {
+            // can only happen while lining up; try again from wherever the ghost is
+            targetCell = FlowField.NONE;
+            previousCell = FlowField.NONE;
+            return;
+        }
+        setLocation(newX, newY);
+    }
+
+    // moves a coordinate towards a target by at most the given distance
+    private static double approach(double from, double to, double distance) {
+        if (from < to) return Math.min(to, from + distance);
+        return Math.max(to, from - distance);
+    }
+}
@@ -1,8 +1,6 @@
-import bagel.Image;
 import bagel.util.Point;
 
-import java.util.ArrayList;
-import java.util.Random;
+import java.nio.ByteBuffer;
 
 
 /**
@@ -14,34 +12,66 @@ import java.util.Random;
  */
 public class GhostPink extends Ghost {
     private final static int SPEED = 3;
-    private final static Image IMAGE = new Image("res/ghostPink.png");
-    private double direction;
-    private Random r = new Random();
+    private final static Sprite IMAGE = Assets.sprite("res/ghostPink.png");
+    private final static double[] MOVES = {MovableEntity.FACING_RIGHT, MovableEntity.FACING_LEFT,
+            MovableEntity.FACING_UP, MovableEntity.FACING_DOWN};
+    private final RandomStream r;
 
     /**
      Constructor.
+     * @param store the store holding the state of the ghost
      * @param loc the initial location of the ghost
+     * @param r the random stream of this ghost
      */
-    public GhostPink(Point loc) {
-        super(IMAGE, loc, SPEED);
+    public GhostPink(EntityStore store, Point loc, RandomStream r) {
+        super(IMAGE, store, EntityStore.GHOST_PINK, loc, SPEED);
+        this.r = r;
         generateDir();
     }
 
     /**
-     * Generates initial ghost movement.
+     * Generates ghost movement: initially, and again whenever it hits a wall.
      */
-    private void generateDir() {
-        double[] MOVES = {MovableEntity.FACING_RIGHT, MovableEntity.FACING_LEFT,
-                MovableEntity.FACING_UP, MovableEntity.FACING_DOWN};
-        direction = MOVES[r.nextInt(MOVES.length)];
+    @Override
+    void generateDir() {
+        setDirection(MOVES[r.nextInt(MOVES.length)]);
     }
 
     /**
-     * Moves ghost based on its specified behaviour.
+     * Writes the state of this ghost that isn't in its store, including its random stream.
+     * @param out the buffer to write stateSize() bytes into
      */
-    protected void doMove(ArrayList<Wall> walls) {
-        if (!moveToEmpty(direction, walls, false)) {
-            generateDir();
-        }
+    @Override
+    public void writeState(ByteBuffer out) {
+        super.writeState(out);
+        r.writeState(out);
+    }
+
+    /**
+     * Puts back the state written by writeState().
+     * @param in the buffer to read stateSize() bytes from
+     */
+    @Override
+    public void readState(ByteBuffer in) {
+        super.readState(in);
+        r.readState(in);
+    }
+
+    /**
+     * A getter for the number of bytes writeState() writes.
+     * @return int the size in bytes.
+     */
+    @Override
+    public int stateSize() {
+        return super.stateSize() + RandomStream.STATE_BYTES;
+    }
+
+    /**
+     * A getter for how this ghost moves.
+     * @return int GhostKernel.RANDOM_TURN.
+     */
+    @Override
+    public int getBehaviour() {
+        return GhostKernel.RANDOM_TURN;
     }
 }
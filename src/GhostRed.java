@@ -1,9 +1,5 @@
-import bagel.Image;
 import bagel.util.Point;
 
-import java.util.ArrayList;
-
-
 /**
  * The red ghost.
  * This ghost has two possible different behaviours. One behaviour says that this ghost is
@@ -13,16 +9,17 @@ import java.util.ArrayList;
  */
 public class GhostRed extends Ghost {
     private final static int SPEED = 1;
-    private final static Image IMAGE = new Image("res/ghostRed.png");
-    private double direction = MovableEntity.FACING_RIGHT;
+    private final static Sprite IMAGE = Assets.sprite("res/ghostRed.png");
 
     /**
      * Constructor.
+     * @param store the store holding the state of the ghost
      * @param loc the initial location of the ghost
      * @param stationary specifies whether this ghost is stationary
      */
-    public GhostRed(Point loc, boolean stationary) {
-        super(IMAGE, loc, generateSpeed(stationary));
+    public GhostRed(EntityStore store, Point loc, boolean stationary) {
+        super(IMAGE, store, EntityStore.GHOST_RED, loc, generateSpeed(stationary));
+        setDirection(MovableEntity.FACING_RIGHT);
     }
 
     /**
@@ -38,12 +35,11 @@ public class GhostRed extends Ghost {
     }
 
     /**
-     * Moves ghost based on its specified behaviour.
+     * A getter for how this ghost moves.
+     * @return int GhostKernel.STATIONARY or GhostKernel.BOUNCE_HORIZONTAL.
      */
-    protected void doMove(ArrayList<Wall> walls) {
-        // adding by pi means reversing the direction, e.g. from right to left or down to up
-        if (!moveToEmpty(direction, walls, false)) {
-            direction = (direction + Math.PI) % (2 * Math.PI);
-        }
+    @Override
+    public int getBehaviour() {
+        return getSpeed() == 0 ? GhostKernel.STATIONARY : GhostKernel.BOUNCE_HORIZONTAL;
     }
 }
@@ -1,4 +1,3 @@
-import bagel.Image;
 import bagel.util.Point;
 
 /**
@@ -8,9 +7,11 @@ import bagel.util.Point;
 public class Heart {
     private final Point HEART_LOC = new Point(900, 10);
     private final static int NEXT_HEART = 30;
-    private final Image HEART_IMG = new Image("res/heart.png");
-    private final static int LIVES = 3;
-    private int livesLost = 0;
+    private final static Sprite HEART_IMG = Assets.sprite("res/heart.png");
+    /** The number of lives the player has in total */
+    public final static int LIVES = 3;
+    // lives are lost on the simulation thread, and drawn on the window's thread
+    private volatile int livesLost = 0;
 
 
     /** A getter to get how many lives a player has in the game.
@@ -30,7 +31,7 @@ public class Heart {
         int currLives = getHearts();
 
         while (currLives > 0) {
-            HEART_IMG.drawFromTopLeft(x, y);
+            HEART_IMG.draw(x, y);
             x += NEXT_HEART;
             currLives--;
         }
@@ -0,0 +1,137 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The InputRecorder class.
+ * Records the arrow keys held down in every tick of one level into a compact binary file,
+ * which InputReplay can play back. Together with the level's seed, the keys are all that is
+ * needed to play the level again exactly the same way.
+ * <p></p>
+ * Keys are held down for many ticks in a row, so they are run-length encoded. The file is:
+ * <ul>
+ *     <li>a header: MAGIC (int), VERSION (byte), level number (int), seed (long),
+ *     lives at the start of the level (byte)</li>
+ *     <li>runs: the KEY_* flags (byte), then the number of ticks they were held (varint)</li>
+ *     <li>a footer: END (byte), the outcome (byte), score (int) and ticks (long)</li>
+ * </ul>
+ * A varint stores 7 bits per byte, with the top bit set on all bytes but the last.
+ */
+public class InputRecorder implements AutoCloseable {
+    /** The first 4 bytes of every recording ("SPRP") */
+    public final static int MAGIC = 0x53505250;
+    /** The version of the file format */
+    public final static byte VERSION = 1;
+    /** Marks the end of the runs (keys never use the top bit) */
+    public final static byte END = (byte) 0xFF;
+
+    private final static int BUFFER_SIZE = 8192;
+    // the longest record is the footer
+    private final static int MAX_RECORD_SIZE = 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private int runKeys = -1;
+    private long runLength = 0;
+    private long ticks = 0;
+    private boolean finished = false;
+
+    /**
+     * The constructor for InputRecorder. Creates (or overwrites) the file and writes the header.
+     * @param file the file to record into
+     * @param level the level number
+     * @param seed the seed the level was built with
+     * @param lives the number of lives the player has at the start of the level
+     * @throws IOException if the file can't be written
+     */
+    public InputRecorder(Path file, int level, long seed, int lives) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.putInt(level);
+        buffer.putLong(seed);
+        buffer.put((byte) lives);
+    }
+
+    /**
+     * Records the keys held down in one tick.
+     * @param keys the KEY_* flags passed to Level.tick()
+     * @throws IOException if the file can't be written
+     */
+    public void record(int keys) throws IOException {
+        if (keys != runKeys) {
+            writeRun();
+            runKeys = keys;
+        }
+        runLength++;
+        ticks++;
+    }
+
+    /**
+     * Ends the recording with the outcome of the level, so that a replay can be checked.
+     * Nothing can be recorded afterwards.
+     * @param outcome Level.WIN, Level.LOSE, or Level.PLAYING if the player quit
+     * @param score the score at the end of the level
+     * @throws IOException if the file can't be written
+     */
+    public void finish(char outcome, int score) throws IOException {
+        if (finished) return;
+        writeRun();
+        reserve();
+        buffer.put(END);
+        buffer.put((byte) outcome);
+        buffer.putInt(score);
+        buffer.putLong(ticks);
+        finished = true;
+    }
+
+    /**
+     * Writes everything left to the file and closes it. A recording that was never finished
+     * is finished as Level.PLAYING with a score of 0.
+     * @throws IOException if the file can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish(Level.PLAYING, 0);
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeRun() throws IOException {
+        if (runLength == 0) return;
+        reserve();
+        buffer.put((byte) runKeys);
+        long length = runLength;
+        while (length >= 0x80) {
+            buffer.put((byte) (length | 0x80));
+            length >>>= 7;
+        }
+        buffer.put((byte) length);
+        runLength = 0;
+    }
+
+    // makes sure the next record fits into the buffer
+    private void reserve() throws IOException {
+        if (buffer.remaining() < MAX_RECORD_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,173 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The InputReplay class.
+ * Loads a recording made by InputRecorder and plays it back on a new level built with the
+ * recorded seed. The level is ticked without a window, as fast as the CPU allows, not at 60 FPS.
+ * <p></p>
+ * Running this class checks that recordings still play out the way they did when they were
+ * recorded, e.g. after a gameplay change.
+ * Usage: java InputReplay [recording files...]
+ */
+public class InputReplay {
+    private final int level;
+    private final long seed;
+    private final int lives;
+    private final byte[] runKeys;
+    private final long[] runLengths;
+    private final int runs;
+
+    // the outcome written when the level was recorded
+    private final char recordedOutcome;
+    private final int recordedScore;
+    private final long recordedTicks;
+
+    /**
+     * Loads a recording.
+     * @param file the recording
+     * @throws IOException if the file can't be read, or is not a valid recording
+     */
+    public InputReplay(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the whole file is in the buffer
+            }
+        }
+        buffer.flip();
+
+        try {
+            if (buffer.getInt() != InputRecorder.MAGIC || buffer.get() != InputRecorder.VERSION) {
+                throw new IOException(file + " is not a recording");
+            }
+            level = buffer.getInt();
+            seed = buffer.getLong();
+            lives = buffer.get();
+
+            byte[] keys = new byte[64];
+            long[] lengths = new long[64];
+            int n = 0;
+            byte key;
+            while ((key = buffer.get()) != InputRecorder.END) {
+                if (n == keys.length) {
+                    keys = Arrays.copyOf(keys, n * 2);
+                    lengths = Arrays.copyOf(lengths, n * 2);
+                }
+                long length = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get();
+                    length |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                keys[n] = key;
+                lengths[n] = length;
+                n++;
+            }
+            runKeys = keys;
+            runLengths = lengths;
+            runs = n;
+            recordedOutcome = (char) buffer.get();
+            recordedScore = buffer.getInt();
+            recordedTicks = buffer.getLong();
+        } catch (BufferUnderflowException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+
+    /**
+     * Plays the recording on a new level, with as many lives as the player had when it was
+     * recorded.
+     * @param manifest the levels of the game, to build the recorded level number from
+     * @return BatchRunner.Result the outcome of the replay
+     */
+    public BatchRunner.Result play(LevelManifest manifest) {
+        Level replayed = manifest.create(level, seed);
+        Heart heart = new Heart();
+        heart.loseHearts(heart.getHearts() - lives);
+        long ticks = 0;
+        char outcome = Level.PLAYING;
+
+        for (int run = 0; run < runs && outcome == Level.PLAYING; run++) {
+            int keys = runKeys[run];
+            for (long i = 0; i < runLengths[run] && outcome == Level.PLAYING; i++) {
+                char tick = replayed.tick(keys);
+                ticks++;
+                if (tick == Level.WIN) {
+                    outcome = Level.WIN;
+                } else if (tick == Level.LOSE) {
+                    heart.loseHearts(1);
+                    if (heart.getHearts() == 0) {
+                        outcome = Level.LOSE;
+                    }
+                }
+            }
+        }
+        return new BatchRunner.Result(0, outcome, replayed.getScore(), ticks);
+    }
+
+    /**
+     * Checks whether a replay ended the same way as the recording.
+     * @param result the result of play()
+     * @return boolean true if the outcome, score and number of ticks all match
+     */
+    public boolean matches(BatchRunner.Result result) {
+        return result.outcome == recordedOutcome && result.score == recordedScore
+                && result.ticks == recordedTicks;
+    }
+
+    /**
+     * The entry point for checking recordings. Replays all given files in parallel and
+     * prints the ones that no longer play out the way they were recorded.
+     */
+    public static void main(String[] args) {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            files.add(Paths.get(arg));
+        }
+
+        LevelManifest manifest;
+        try {
+            manifest = new LevelManifest(LevelManifest.DEFAULT_FILE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<String> mismatches = files.parallelStream().map(file -> {
+            try {
+                InputReplay replay = new InputReplay(file);
+                BatchRunner.Result result = replay.play(manifest);
+                if (replay.matches(result)) {
+                    return null;
+                }
+                return file + ": recorded " + replay.recordedOutcome + " score "
+                        + replay.recordedScore + " ticks " + replay.recordedTicks
+                        + ", replayed " + result.outcome + " score " + result.score
+                        + " ticks " + result.ticks;
+            } catch (IOException e) {
+                return file + ": " + e.getMessage();
+            }
+        }).filter(line -> line != null).collect(Collectors.toList());
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        for (String mismatch : mismatches) {
+            System.out.println(mismatch);
+        }
+        System.out.printf("%d of %d recordings replayed the same in %.2f s%n",
+                files.size() - mismatches.size(), files.size(), seconds);
+    }
+}
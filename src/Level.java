@@ -1,19 +1,29 @@
 import bagel.*;
 import bagel.util.*;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.SplittableRandom;
 
 /**
  * The Level class.
  * Allows the player to play one level in the game.
- * There is one public method in Level, which is play().
+ * The main public method in Level is play(), which runs one frame of the game.
+ * A frame is split into two parts: tick(), which advances the game by one step from the
+ * arrow keys held down, and render(), which draws the resulting state. tick() never draws,
+ * so a level can also be simulated without a window (e.g. for automated testing), and
+ * fastForward() advances it by many ticks in one step when that needs to be even faster.
+ * In the game itself, a Simulation calls tick() on its own thread at a fixed rate, and the
+ * window draws the snapshots it takes with render(LevelSnapshot, double).
  * <p></p>
- * To create a new level, simply create a subclass and pass in the world file (csv)
- * and the score required to win. The implementation of gameplay in this class is pretty
- * well-generalised -- there should be no need to write anything new in the subclasses,
- * unless if there's any specific behaviour unique to that level only.
+ * To create a new level, simply add its world file (csv) and the score required to win to
+ * the level manifest (see LevelManifest), or create a subclass and pass them in. The
+ * implementation of gameplay in this class is pretty well-generalised -- there should be no
+ * need to write anything new in the subclasses, unless if there's any specific behaviour
+ * unique to that level only.
  * This also means that it's custom level friendly. Just make a
  * new world file and a target score, and you're all set to create a new custom level!
  * <p></p>
@@ -23,13 +33,15 @@ import java.util.ArrayList;
  * code for all of those stuff in Level1.java instead of here would result in code duplication.
  * Hopefully this is an acceptable design approach :)
  */
-public abstract class Level {
+public class Level {
 
-    // variables to keep track of frame count
+    // variables to keep track of tick count. A tick is one call to tick(); Simulation plays
+    // a fixed number of them per second, so these are the same length on every machine.
     private int switchCounter = 0;
     private int frenzyCounter = 0;
-    private final static int FRENZY_FRAME = 1000;     // the length of frenzy mode
-    private final static int SWITCH_OPEN_FRAME = 15;  // frames to switch between pac open<->close
+    private long tickCount = 0;
+    private final static int FRENZY_FRAME = 1000;     // the length of frenzy mode, in ticks
+    private final static int SWITCH_OPEN_FRAME = 15;  // ticks to switch between pac open<->close
 
     // player's score
     private int score;
@@ -41,128 +53,272 @@ public abstract class Level {
     /** The player is currently playing this level */
     public final static char PLAYING = 'p';
 
-    // entities
+    // arrow keys held down in a frame, as bit flags for tick()
+    /** The right arrow key is held down */
+    public final static int KEY_RIGHT = 1;
+    /** The left arrow key is held down */
+    public final static int KEY_LEFT = 1 << 1;
+    /** The up arrow key is held down */
+    public final static int KEY_UP = 1 << 2;
+    /** The down arrow key is held down */
+    public final static int KEY_DOWN = 1 << 3;
+
+    // entities. Their state is kept in one structure-of-arrays store per group;
+    // the entity objects are views into those stores. Walls and pickups never move, so they
+    // only exist in their stores, without entity objects.
+    private final EntityStore playerData = new EntityStore();
+    private final EntityStore ghostData = new EntityStore();
+    private final EntityStore wallData = new EntityStore();
+    private final EntityStore dotData = new EntityStore();
+    private final EntityStore cherryData = new EntityStore();
+    private final EntityStore pelletData = new EntityStore();
     private Pac player;
     private ArrayList<Ghost> ghosts = new ArrayList<>();
-    private ArrayList<Wall> walls = new ArrayList<>();
-    private ArrayList<Dot> dots = new ArrayList<>();
-    private ArrayList<Cherry> cherries = new ArrayList<>();
-    private ArrayList<Pellet> pellets = new ArrayList<>();
+    private WallGrid wallGrid;
+    // pickups are bucketed in grids, so eating one doesn't scan (or shift) a whole list
+    private PickupGrid dots;
+    private PickupGrid cherries;
+    private PickupGrid pellets;
+    // ghosts that chase pac all find their way with one shared distance field to pac,
+    // which is only made if there are any
+    private int chasers = 0;
+    private FlowField flowField;
+    // moves the ghosts in batches of the same behaviour
+    private GhostKernel ghostKernel;
 
     // frenzy
     private boolean frenzy = false;
+    // ghosts eaten during frenzy mode are inactive, and wait here to be respawned at their
+    // starting location when frenzy mode ends
+    private int[] respawnQueue;
+    private int respawnCount = 0;
+
+    // the floats observe() writes for the level, and for every ghost
+    private final static int OBSERVATION_FLOATS = 4;
+    private final static int OBSERVATION_GHOST_FLOATS = 3;
+
+    // the size of a saved state, worked out on the first stateSize()
+    private int stateSize = -1;
+
+    // everything in the level is drawn through the render queue; the walls are in its
+    // static layer, which is built on the first render()
+    private final RenderQueue renderQueue = new RenderQueue();
+    private boolean staticLayerBuilt = false;
 
     // message
     private Message message = new Message();
 
+    // times the phases of every frame; records nothing unless setProfiler() is called.
+    // tick() and render() may run on different threads, so each has its own profiler
+    private FrameProfiler profiler = FrameProfiler.DISABLED;
+    private FrameProfiler tickProfiler = FrameProfiler.DISABLED;
+
     /**
-     * The constructor for Level.
+     * The constructor for Level. Ghosts get a random seed, so every game plays differently.
      * @param fileName the world file which must be a csv file. This constructor
      *                  automatically reads csv from fileName and parses its content.
      * @param targetScore the score required for the player to achieve to win the game.
+     * @throws UncheckedIOException if the world file can't be loaded
      */
     public Level(String fileName, int targetScore) {
+        this(fileName, targetScore, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * The constructor for Level.
+     * Every ghost that behaves randomly gets its own random stream split off from the seed,
+     * in the order they appear in the world file. So two levels built with the same seed and
+     * played with the same keys play out exactly the same.
+     * @param fileName the world file which must be a csv file. This constructor
+     *                  automatically reads csv from fileName and parses its content,
+     *                  or loads its compiled file if LevelCompiler has made one.
+     * @param targetScore the score required for the player to achieve to win the game.
+     * @param seed the seed for all randomness in this level.
+     * @throws UncheckedIOException if the world file can't be loaded
+     */
+    public Level(String fileName, int targetScore, long seed) {
+        this(load(fileName), targetScore, seed);
+    }
+
+    /**
+     * The constructor for Level, from a world file that has been loaded already.
+     * The file is only read, so one file can be the template of any number of levels,
+     * e.g. when a level is restarted.
+     * @param file the loaded world file
+     * @param targetScore the score required for the player to achieve to win the game.
+     * @param seed the seed for all randomness in this level.
+     */
+    public Level(LevelFile file, int targetScore, long seed) {
         this.targetScore = targetScore;
+        RandomStream random = new RandomStream(seed);
 
-        // code structure inspired by the code from lecture 8 slide 45
-        try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
-            String text;
-
-            // string values in the CSV file that represent entities
-            String PLAYER = "Player";
-            String GHOST = "Ghost";
-            String GHOST_RED = "GhostRed";
-            String GHOST_BLUE = "GhostBlue";
-            String GHOST_GREEN = "GhostGreen";
-            String GHOST_PINK = "GhostPink";
-            String WALL = "Wall";
-            String DOT = "Dot";
-            String CHERRY = "Cherry";
-            String PELLET = "Pellet";
-
-            // parse csv content
-            while ((text = br.readLine()) != null) {
-                String cells[] = text.split(",");
-                String entity = cells[0];
-                double x = Double.parseDouble(cells[1]);
-                double y = Double.parseDouble(cells[2]);
-                Point loc = new Point(x, y);
-
-                // pac
-                if (entity.equals(PLAYER)) {
-                    player = new Pac(loc);
-
-                // ghosts
-                } else if (entity.equals(GHOST)) {
-                    ghosts.add(new GhostRed(loc, true));
-                } else if (entity.equals(GHOST_RED)) {
-                    ghosts.add(new GhostRed(loc, false));
-                } else if (entity.equals(GHOST_BLUE)) {
-                    ghosts.add(new GhostBlue(loc));
-                } else if (entity.equals(GHOST_GREEN)) {
-                    ghosts.add(new GhostGreen(loc));
-                } else if (entity.equals(GHOST_PINK)) {
-                    ghosts.add(new GhostPink(loc));
-
-                // other entities
-                } else if (entity.equals(WALL)) {
-                    walls.add(new Wall(loc));
-                } else if (entity.equals(DOT)) {
-                    dots.add(new Dot(loc));
-                } else if (entity.equals(CHERRY)) {
-                    cherries.add(new Cherry(loc));
-                } else if (entity.equals(PELLET)) {
-                    pellets.add(new Pellet(loc));
-                }
+        // pac
+        player = new Pac(playerData, new Point(file.getPlayerX(), file.getPlayerY()));
+
+        // ghosts
+        LevelFile.Table table = file.getGhosts();
+        for (int i = 0; i < table.size(); i++) {
+            Point loc = new Point(table.getX(i), table.getY(i));
+            byte kind = file.getGhostKind(i);
+            if (kind == LevelFile.GHOST) {
+                ghosts.add(new GhostRed(ghostData, loc, true));
+            } else if (kind == LevelFile.GHOST_RED) {
+                ghosts.add(new GhostRed(ghostData, loc, false));
+            } else if (kind == LevelFile.GHOST_BLUE) {
+                ghosts.add(new GhostBlue(ghostData, loc));
+            } else if (kind == LevelFile.GHOST_GREEN) {
+                ghosts.add(new GhostGreen(ghostData, loc, random.split()));
+            } else if (kind == LevelFile.GHOST_PINK) {
+                ghosts.add(new GhostPink(ghostData, loc, random.split()));
+            } else if (kind == LevelFile.GHOST_ORANGE) {
+                ghosts.add(new GhostOrange(ghostData, loc));
+                chasers++;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+        }
+
+        // other entities never move, so they go straight into their stores
+        addAll(wallData, EntityStore.WALL, file.getWalls(), Wall.WALL_IMG);
+        addAll(dotData, EntityStore.DOT, file.getDots(), Dot.DOT_IMG);
+        addAll(cherryData, EntityStore.CHERRY, file.getCherries(), Cherry.CHERRY_IMG);
+        addAll(pelletData, EntityStore.PELLET, file.getPellets(), Pellet.PELLET_IMG);
+
+        // walls and pickups never move, so index them once for fast collision checks
+        // (a compiled world file has them indexed already)
+        if (file.getGrids() != null) {
+            ByteBuffer grids = file.getGrids();
+            wallGrid = WallGrid.read(wallData, grids);
+            dots = PickupGrid.read(dotData, Dot.DOT_IMG, grids);
+            cherries = PickupGrid.read(cherryData, Cherry.CHERRY_IMG, grids);
+            pellets = PickupGrid.read(pelletData, Pellet.PELLET_IMG, grids);
+        } else {
+            wallGrid = new WallGrid(wallData);
+            dots = new PickupGrid(dotData, Dot.DOT_IMG);
+            cherries = new PickupGrid(cherryData, Cherry.CHERRY_IMG);
+            pellets = new PickupGrid(pelletData, Pellet.PELLET_IMG);
+        }
+        // a ghost can only be eaten once per frenzy mode, so this never fills up
+        respawnQueue = new int[ghosts.size()];
+        if (chasers > 0) {
+            flowField = new FlowField(wallGrid);
+        }
+        ghostKernel = new GhostKernel(ghostData, ghosts);
+    }
+
+    // a compiled world file is loaded if there is one, see LevelFile
+    private static LevelFile load(String fileName) {
+        try {
+            return LevelFile.load(fileName);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load the level " + fileName, e);
         }
     }
 
     /**
      * The game is played here, in the play() method.
-     * play() plays one level of the game.
+     * play() plays one frame of the level: it advances the game, then draws it.
+     * @param input player's keyboard input
      * @return char of either WIN = 'w', LOSE = 'l', or PLAYING = 'p'.
      */
     public char play(Input input) {
+        char outcome = tick(readKeys(input));
+        render();
+        return outcome;
+    }
 
-        // frame counter for pac to switch between open and close
-        switchCounter = (switchCounter + 1) % SWITCH_OPEN_FRAME;
-        if (switchCounter == 0) {
-            player.switchOpen();
+    /**
+     * Converts the arrow keys held down in this frame into bit flags for tick().
+     * @param input player's keyboard input
+     * @return int the KEY_* flags of all arrow keys held down
+     */
+    public static int readKeys(Input input) {
+        int keys = 0;
+        if (input.isDown(Keys.RIGHT)) keys |= KEY_RIGHT;
+        if (input.isDown(Keys.LEFT)) keys |= KEY_LEFT;
+        if (input.isDown(Keys.UP)) keys |= KEY_UP;
+        if (input.isDown(Keys.DOWN)) keys |= KEY_DOWN;
+        return keys;
+    }
+
+    /**
+     * Advances the level by one frame without drawing anything.
+     * The outcome only depends on the current state and the keys given, so tick() can be
+     * called in a loop without a window, as fast as the CPU allows.
+     * @param keys the KEY_* flags of the arrow keys held down in this frame
+     * @return char of either WIN = 'w', LOSE = 'l', or PLAYING = 'p'.
+     */
+    public char tick(int keys) {
+        return advance(keys, 1);
+    }
+
+    /**
+     * Advances the level by many ticks in one step, with the same keys held down, e.g. to
+     * evaluate bots much faster than tick by tick.
+     * Movement is swept: pac and ghosts move to exactly where they would be after that many
+     * ticks, stopping and turning at walls as they would, and pac eats every pickup along
+     * the way. Whenever pac could meet a ghost, eat a pellet or reach the target score during
+     * these ticks, or frenzy mode could run out, they are split into shorter steps, down to
+     * single ticks, so a ghost is never passed through and everything happens on the tick it
+     * would in tick().
+     * Once a life is lost or the level is won, the rest of the ticks are not played, so
+     * that every lost life is returned (see getTicks()).
+     * @param keys the KEY_* flags of the arrow keys held down during all these ticks
+     * @param ticks the number of ticks to advance by (1 is the same as tick())
+     * @return char of either WIN = 'w', LOSE = 'l', or PLAYING = 'p'.
+     */
+    public char fastForward(int keys, int ticks) {
+        if (ticks < 1) {
+            throw new IllegalArgumentException("Can't fast forward by " + ticks + " ticks");
         }
+        return advance(keys, ticks);
+    }
 
-        // this is where the game starts.
-        // Draw all entities (plus score)
-        drawEntities(dots);
-        drawEntities(walls);
-        drawEntities(cherries);
-        drawEntities(pellets);
-        message.drawScore(score);
+    private char advance(int keys, int ticks) {
+        if (ticks > 1 && !canSweep(keys, ticks)) {
+            // something may happen in these ticks that depends on exactly when it happens, so
+            // they are played in halves, down to one tick at a time where it can happen
+            char outcome = advance(keys, ticks / 2);
+            if (outcome != PLAYING) {
+                return outcome;
+            }
+            return advance(keys, ticks - ticks / 2);
+        }
 
-        // move ghosts
-        for (Ghost ghost : ghosts) {
-            ghost.move(walls);
+        tickCount += ticks;
+
+        // frame counter for pac to switch between open and close
+        switchCounter += ticks;
+        if (switchCounter / SWITCH_OPEN_FRAME % 2 == 1) {
+            player.switchOpen();
         }
+        switchCounter %= SWITCH_OPEN_FRAME;
 
-        // move pac
-        if (input.isDown(Keys.RIGHT)) {
-            player.move(MovableEntity.FACING_RIGHT, walls);
-            // 'else if' instead of 'if' to prevent diagonal movement
-            // when multiple keys are pressed
-        } else if (input.isDown(Keys.LEFT)) {
-            player.move(MovableEntity.FACING_LEFT, walls);
-        } else if (input.isDown(Keys.UP)) {
-            player.move(MovableEntity.FACING_UP, walls);
-        } else if (input.isDown(Keys.DOWN)) {
-            player.move(MovableEntity.FACING_DOWN, walls);
+        // move active ghosts, a group of the same behaviour at a time
+        long start = tickProfiler.start();
+        ghostKernel.update(wallGrid, ticks);
+        tickProfiler.stop(FrameProfiler.GHOSTS, start);
+
+        // move pac. ghosts that go by the distance field need to know where pac is in every
+        // tick, so if there are any, they and pac move a tick at a time.
+        // the distance field is only rebuilt when pac has moved into another cell
+        double fromX = player.getX(), fromY = player.getY();
+        if (flowField == null) {
+            movePlayer(keys, ticks);
         } else {
-            player.draw();
+            for (int tick = 0; tick < ticks; tick++) {
+                start = tickProfiler.start();
+                flowField.update(player.getX() + player.getWidth() / 2,
+                        player.getY() + player.getHeight() / 2);
+                ghostKernel.updateOthers(wallGrid, flowField);
+                tickProfiler.stop(FrameProfiler.GHOSTS, start);
+                movePlayer(keys, 1);
+            }
         }
 
         // if the player has lost a life
-        if (handleCollision()) {
+        start = tickProfiler.start();
+        boolean lost = handleCollision(fromX, fromY, ticks);
+        tickProfiler.stop(FrameProfiler.COLLISION, start);
+        if (lost) {
             return LOSE;
         }
 
@@ -174,12 +330,348 @@ public abstract class Level {
         return PLAYING;
     }
 
+    // moves pac by the given number of ticks, in the direction of the arrow keys held down
+    private void movePlayer(int keys, int ticks) {
+        long start = tickProfiler.start();
+        if ((keys & KEY_RIGHT) != 0) {
+            player.move(MovableEntity.FACING_RIGHT, wallGrid, ticks);
+            // 'else if' instead of 'if' to prevent diagonal movement
+            // when multiple keys are pressed
+        } else if ((keys & KEY_LEFT) != 0) {
+            player.move(MovableEntity.FACING_LEFT, wallGrid, ticks);
+        } else if ((keys & KEY_UP) != 0) {
+            player.move(MovableEntity.FACING_UP, wallGrid, ticks);
+        } else if ((keys & KEY_DOWN) != 0) {
+            player.move(MovableEntity.FACING_DOWN, wallGrid, ticks);
+        }
+        tickProfiler.stop(FrameProfiler.PAC, start);
+    }
+
+    // checks if the given ticks can be swept through in one go: in none of them can pac meet
+    // a ghost, eat a pellet or reach the target score, or frenzy mode run out. this is
+    // checked before anything moves, against the boxes pac and every ghost could reach
+    private boolean canSweep(int keys, int ticks) {
+        if (frenzy && frenzyCounter + ticks >= FRENZY_FRAME) {
+            return false;
+        }
+
+        // pac only moves in the direction of the keys, at its speed at most
+        double x = player.getX(), y = player.getY();
+        double width = player.getWidth(), height = player.getHeight();
+        double reach = player.getSpeed() * ticks;
+        if ((keys & KEY_RIGHT) != 0) {
+            width += reach;
+        } else if ((keys & KEY_LEFT) != 0) {
+            x -= reach;
+            width += reach;
+        } else if ((keys & KEY_UP) != 0) {
+            y -= reach;
+            height += reach;
+        } else if ((keys & KEY_DOWN) != 0) {
+            height += reach;
+        }
+        if (pellets.isColliding(x, y, width, height) >= 0) {
+            return false;
+        }
+        // the level must be won on the very tick the target score is reached
+        if (score + dots.countColliding(x, y, width, height) * Dot.SCORE
+                + cherries.countColliding(x, y, width, height) * Cherry.SCORE >= targetScore) {
+            return false;
+        }
+
+        // a ghost can turn, so it may be anywhere within its speed of where it is
+        for (int i = ghostData.nextActive(0); i >= 0; i = ghostData.nextActive(i + 1)) {
+            double ghostReach = ghostData.getSpeed(i) * ticks;
+            if (ghostData.intersects(i, x - ghostReach, y - ghostReach,
+                    width + 2 * ghostReach, height + 2 * ghostReach)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
-     * A shortcut to draw multiple entities in one line.
+     * Draws the current state of the level (all entities plus score).
+     * This only reads the state left behind by tick(), and never changes it.
+     * Entities are queued, then drawn grouped by image: walls first, then pickups, then
+     * ghosts and pac on top.
+     */
+    public void render() {
+        long start = profiler.start();
+        buildStaticLayer();
+        dots.draw(renderQueue);
+        cherries.draw(renderQueue);
+        pellets.draw(renderQueue);
+        drawEntities(ghosts);
+        player.draw(renderQueue, RenderQueue.PAC);
+        renderQueue.submit();
+        profiler.stop(FrameProfiler.DRAW, start);
+        message.drawScore(score);
+    }
+
+    /**
+     * Draws a snapshot of the level taken by snapshot(), possibly on another thread than the
+     * one playing the level. Ghosts and pac are drawn in between where they were at the tick
+     * before the snapshot and where they are in it, so that they move smoothly even when frames
+     * and ticks don't line up. Entities that jumped (e.g. back to the start) are not smoothed.
+     * @param snapshot the snapshot to draw
+     * @param alpha how far between the two ticks to draw, from 0 (previous tick) to 1 (snapshot)
+     */
+    public void render(LevelSnapshot snapshot, double alpha) {
+        long start = profiler.start();
+        buildStaticLayer();
+        dots.draw(renderQueue, snapshot.dots);
+        cherries.draw(renderQueue, snapshot.cherries);
+        pellets.draw(renderQueue, snapshot.pellets);
+        for (int i = 0; i < snapshot.actors; i++) {
+            if (snapshot.sprites[i] == null) continue;
+            double x = snapshot.x[i], y = snapshot.y[i];
+            double dx = x - snapshot.prevX[i], dy = y - snapshot.prevY[i];
+            if (Math.abs(dx) + Math.abs(dy) <= snapshot.sprites[i].getWidth()) {
+                x -= dx * (1 - alpha);
+                y -= dy * (1 - alpha);
+            }
+            // pac is the last actor of a snapshot, and is drawn over the ghosts
+            int layer = i == snapshot.actors - 1 ? RenderQueue.PAC : RenderQueue.ACTORS;
+            renderQueue.add(layer, snapshot.sprites[i], x, y, snapshot.rotation[i]);
+        }
+        renderQueue.submit();
+        profiler.stop(FrameProfiler.DRAW, start);
+        message.drawScore(snapshot.score);
+    }
+
+    /**
+     * Copies everything render(LevelSnapshot, double) needs into a snapshot.
+     * @param into the snapshot to fill in
+     * @param previous the snapshot of the tick before (may be the same object as into),
+     *                 or null if there is none
+     */
+    public void snapshot(LevelSnapshot into, LevelSnapshot previous) {
+        into.resize(ghosts.size() + 1);
+        for (int i = 0; i < into.actors; i++) {
+            MovableEntity actor = i < ghosts.size() ? ghosts.get(i) : player;
+            if (!actor.isActive()) {
+                // not drawn; its position is kept so that it's not smoothed when it respawns
+                into.sprites[i] = null;
+                into.prevX[i] = into.x[i] = actor.getX();
+                into.prevY[i] = into.y[i] = actor.getY();
+                continue;
+            }
+            // read the previous position before overwriting it, in case into == previous
+            into.prevX[i] = previous == null ? actor.getX() : previous.x[i];
+            into.prevY[i] = previous == null ? actor.getY() : previous.y[i];
+            into.sprites[i] = actor.getSprite();
+            into.x[i] = actor.getX();
+            into.y[i] = actor.getY();
+            into.rotation[i] = actor.getFacing();
+        }
+        into.dots = dots.copyAlive(into.dots);
+        into.cherries = cherries.copyAlive(into.cherries);
+        into.pellets = pellets.copyAlive(into.pellets);
+        into.score = score;
+    }
+
+    /**
+     * A getter for the number of bytes observe() writes, which never changes for a level.
+     * @return int the size in bytes, a multiple of Long.BYTES.
+     */
+    public int observationSize() {
+        int header = (OBSERVATION_FLOATS + OBSERVATION_GHOST_FLOATS * ghosts.size()) * Float.BYTES;
+        // the bitmaps are lined up to whole longs
+        int padded = (header + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+        return padded + (dots.getAliveWords() + cherries.getAliveWords()
+                + pellets.getAliveWords()) * Long.BYTES;
+    }
+
+    /**
+     * Writes what an agent playing this level can see into a buffer, at a fixed place so
+     * that many levels can share one buffer (see VectorEnv). The observation is
+     * observationSize() bytes, laid out in the buffer's byte order as:
+     * <ul>
+     *     <li>floats: pac's x and y, 1 if frenzy mode is on (else 0), and the score</li>
+     *     <li>floats for every ghost, in world file order: its x and y, and 1 if it's active
+     *     (else 0, i.e. eaten during frenzy mode)</li>
+     *     <li>zeroes up to the next multiple of 8 bytes</li>
+     *     <li>longs: the bitmaps of the dots, cherries and pellets still on the map, one bit
+     *     per pickup in world file order (see PickupGrid.writeAlive())</li>
+     * </ul>
+     * The buffer's position is not changed, and nothing is allocated.
+     * @param out the buffer to write into
+     * @param index the byte index in the buffer to write the observation at
+     */
+    public void observe(ByteBuffer out, int index) {
+        int end = index + observationSize();
+        out.putFloat(index, (float) player.getX());
+        out.putFloat(index += Float.BYTES, (float) player.getY());
+        out.putFloat(index += Float.BYTES, frenzy ? 1 : 0);
+        out.putFloat(index += Float.BYTES, score);
+        for (int i = 0; i < ghosts.size(); i++) {
+            Ghost ghost = ghosts.get(i);
+            out.putFloat(index += Float.BYTES, (float) ghost.getX());
+            out.putFloat(index += Float.BYTES, (float) ghost.getY());
+            out.putFloat(index += Float.BYTES, ghost.isActive() ? 1 : 0);
+        }
+        index += Float.BYTES;
+        int bitmaps = end - (dots.getAliveWords() + cherries.getAliveWords()
+                + pellets.getAliveWords()) * Long.BYTES;
+        for (; index < bitmaps; index++) {
+            out.put(index, (byte) 0);
+        }
+        index = dots.writeAlive(out, index);
+        index = cherries.writeAlive(out, index);
+        pellets.writeAlive(out, index);
+    }
+
+    /**
+     * A getter for the number of bytes saveState() writes, which never changes for a level.
+     * @return int the size in bytes.
+     */
+    public int stateSize() {
+        if (stateSize < 0) {
+            // counters, the frenzy flag and the respawn queue
+            int size = 4 * Integer.BYTES + Long.BYTES + 1 + respawnQueue.length * Integer.BYTES;
+            size += playerData.stateSize() + ghostData.stateSize() + player.stateSize();
+            for (Ghost ghost : ghosts) {
+                size += ghost.stateSize();
+            }
+            stateSize = size + dots.stateSize() + cherries.stateSize() + pellets.stateSize();
+        }
+        return stateSize;
+    }
+
+    /**
+     * Creates a buffer that can hold the state of this level, to be reused for every
+     * saveState() (e.g. by a rollback or a search that saves the level many times).
+     * @return ByteBuffer a buffer of stateSize() bytes.
+     */
+    public ByteBuffer newStateBuffer() {
+        return ByteBuffer.allocateDirect(stateSize()).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Saves everything that can change while this level is played into a buffer, so that
+     * the level can be put back to this point with restoreState(). Walls, sizes and sprites
+     * never change, so they are not saved, and neither is the flow field, which is always
+     * rebuilt from where pac is. The state is written from the start of the buffer, which
+     * is then flipped, ready to be restored from.
+     * @param out the buffer to save into, with at least stateSize() bytes (see newStateBuffer())
+     */
+    public void saveState(ByteBuffer out) {
+        out.clear();
+        out.putInt(switchCounter);
+        out.putInt(frenzyCounter);
+        out.putLong(tickCount);
+        out.putInt(score);
+        out.putInt(respawnCount);
+        out.put(frenzy ? (byte) 1 : 0);
+        for (int ghost : respawnQueue) {
+            out.putInt(ghost);
+        }
+
+        playerData.writeState(out);
+        ghostData.writeState(out);
+        player.writeState(out);
+        for (int i = 0; i < ghosts.size(); i++) {
+            ghosts.get(i).writeState(out);
+        }
+        dots.writeState(out);
+        cherries.writeState(out);
+        pellets.writeState(out);
+        out.flip();
+    }
+
+    /**
+     * Puts this level back to the point a saveState() was made at. The state must have been
+     * saved from this level, or from another level built from the same world file.
+     * The state is read from the start of the buffer, so a buffer can be restored any
+     * number of times.
+     * @param in the buffer saved into by saveState()
+     */
+    public void restoreState(ByteBuffer in) {
+        in.rewind();
+        switchCounter = in.getInt();
+        frenzyCounter = in.getInt();
+        tickCount = in.getLong();
+        score = in.getInt();
+        respawnCount = in.getInt();
+        frenzy = in.get() != 0;
+        for (int k = 0; k < respawnQueue.length; k++) {
+            respawnQueue[k] = in.getInt();
+        }
+
+        playerData.readState(in);
+        ghostData.readState(in);
+        player.readState(in);
+        for (int i = 0; i < ghosts.size(); i++) {
+            ghosts.get(i).readState(in);
+        }
+        dots.readState(in);
+        cherries.readState(in);
+        pellets.readState(in);
+    }
+
+    /**
+     * Turns on profiling of this level's frame phases.
+     * @param profiler the profiler to record the phases into
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+        this.tickProfiler = profiler;
+        message.setProfiler(profiler);
+    }
+
+    /**
+     * Records the phases of tick() into their own profiler, for when tick() and render()
+     * run on different threads. Must be called after setProfiler().
+     * @param tickProfiler the profiler to record the phases of tick() into
+     */
+    public void setTickProfiler(FrameProfiler tickProfiler) {
+        this.tickProfiler = tickProfiler;
+    }
+
+    /**
+     * A getter for the number of ticks played in this level, which fastForward() can stop
+     * short of when a life is lost.
+     * @return long the number of ticks.
+     */
+    public long getTicks() {
+        return tickCount;
+    }
+
+    /**
+     * A getter for the player's score in this level.
+     * @return int the current score.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    // adds entities that never move to their store, in the order of the table
+    private static void addAll(EntityStore store, int type, LevelFile.Table table,
+                               Sprite sprite) {
+        store.ensureCapacity(store.size() + table.size());
+        for (int i = 0; i < table.size(); i++) {
+            store.add(type, table.getX(i), table.getY(i), sprite.getWidth(), sprite.getHeight());
+        }
+    }
+
+    // walls never move, so they are queued once into the render queue's static layer
+    private void buildStaticLayer() {
+        if (staticLayerBuilt) return;
+        for (int i = 0; i < wallData.size(); i++) {
+            renderQueue.addStatic(Wall.WALL_IMG, wallData.getX(i), wallData.getY(i));
+        }
+        staticLayerBuilt = true;
+    }
+
+    /**
+     * A shortcut to queue multiple moving entities in one line. Inactive ones are skipped.
      */
     private void drawEntities(ArrayList<? extends Entity> entities) {
-        for (Entity entity : entities) {
-                entity.draw();
+        for (int i = 0; i < entities.size(); i++) {
+            if (entities.get(i).isActive()) {
+                entities.get(i).draw(renderQueue, RenderQueue.ACTORS);
+            }
         }
     }
 
@@ -203,22 +695,34 @@ public abstract class Level {
         }
         player.deactivateFrenzy();
         frenzy = false;
+
+        // respawn the ghosts eaten during frenzy mode at their starting location
+        for (int k = 0; k < respawnCount; k++) {
+            Ghost ghost = ghosts.get(respawnQueue[k]);
+            ghost.moveToStart();
+            ghost.setActive(true);
+        }
+        respawnCount = 0;
     }
 
     /**
      * Handles player behaviour when there is a collision between player
      * and any other entities.
+     * @param fromX the x coordinate pac moved from
+     * @param fromY the y coordinate pac moved from
+     * @param ticks the number of ticks pac moved for
      * @return boolean true if the collision causes player to lose a life, false otherwise.
      */
-    private boolean handleCollision() {
-        // ghost
-        int i = player.isColliding(ghosts);
+    private boolean handleCollision(double fromX, double fromY, int ticks) {
+        // ghost (ghosts are stored in the same order in ghosts and ghostData).
+        // eaten ghosts are inactive, so they are never found here
+        int i = ghostData.findColliding(player.getX(), player.getY(), player.getWidth(),
+                player.getHeight());
         if (i >= 0) {
             if (frenzy) {
                 // disappear until frenzy mode is finished, then respawn at starting location.
-                // a neat trick to make the ghost "disappear" without actually removing it:
-                // put it off-screen.
-                ghosts.get(i).setLocation(Entity.OFF_SCREEN);
+                ghosts.get(i).setActive(false);
+                respawnQueue[respawnCount++] = i;
                 score += Ghost.SCORE;
             } else {
                 // move to starting location
@@ -228,35 +732,48 @@ public abstract class Level {
             }
         }
 
-        // dot
-        i = player.isColliding(dots);
-        if (i >= 0) {
-            // increase score by 10
-            dots.remove(i);
-            score += Dot.SCORE;
-        }
+        if (ticks == 1) {
+            // dot
+            i = dots.isColliding(player);
+            if (i >= 0) {
+                // increase score by 10
+                dots.remove(i);
+                score += Dot.SCORE;
+            }
 
-        // cherry
-        i = player.isColliding(cherries);
-        if (i >= 0) {
-            // increase score by 20
-            cherries.remove(i);
-            score += Cherry.SCORE;
-        }
+            // cherry
+            i = cherries.isColliding(player);
+            if (i >= 0) {
+                // increase score by 20
+                cherries.remove(i);
+                score += Cherry.SCORE;
+            }
 
-        // pellet
-        i = player.isColliding(pellets);
-        if (i >= 0) {
-            // activate frenzy mode
-            pellets.remove(i);
-            activateFrenzy();
-            frenzyCounter = 0;
+            // pellet
+            i = pellets.isColliding(player);
+            if (i >= 0) {
+                // activate frenzy mode
+                pellets.remove(i);
+                activateFrenzy();
+                frenzyCounter = 0;
+            }
+        } else {
+            // fast forward: pac eats everything in the box it swept through
+            double x = Math.min(fromX, player.getX()), y = Math.min(fromY, player.getY());
+            double width = Math.abs(player.getX() - fromX) + player.getWidth();
+            double height = Math.abs(player.getY() - fromY) + player.getHeight();
+            score += dots.removeAll(x, y, width, height) * Dot.SCORE;
+            score += cherries.removeAll(x, y, width, height) * Cherry.SCORE;
+            if (pellets.removeAll(x, y, width, height) > 0) {
+                activateFrenzy();
+                frenzyCounter = 0;
+            }
         }
 
         // after activation, deactivate frenzy mode after 1000 frames
         if (frenzy) {
-            frenzyCounter++;
-            if (frenzyCounter == FRENZY_FRAME) {
+            frenzyCounter += ticks;
+            if (frenzyCounter >= FRENZY_FRAME) {
                 deactivateFrenzy();
             }
         }
@@ -0,0 +1,71 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The LevelCompiler class.
+ * Compiles csv world files into the binary format of LevelFile, next to the csv file
+ * (e.g. res/level0.csv into res/level0.bin). Levels load the compiled file from then on,
+ * until the csv file is changed again.
+ * Usage: java LevelCompiler [csv world files...] (res/level0.csv and res/level1.csv by default)
+ */
+public class LevelCompiler {
+    private final static String[] DEFAULT_FILES = {"res/level0.csv", "res/level1.csv"};
+
+    /**
+     * Compiles one world file.
+     * @param csvFileName the csv world file
+     * @return Path the compiled file
+     * @throws IOException if the csv file can't be read or the compiled file can't be written
+     */
+    public static Path compile(String csvFileName) throws IOException {
+        Path compiled = LevelFile.compiledPath(csvFileName);
+        compile(csvFileName, compiled);
+        return compiled;
+    }
+
+    /**
+     * Compiles one world file into a given file, e.g. a temporary file that levels won't
+     * pick up by themselves.
+     * @param csvFileName the csv world file
+     * @param compiled the compiled file to write
+     * @throws IOException if the csv file can't be read or the compiled file can't be written
+     */
+    public static void compile(String csvFileName, Path compiled) throws IOException {
+        LevelFile file = LevelFile.readCsv(csvFileName);
+
+        // build the grids from entities of the real size, the same way Level would
+        file.writeCompiled(compiled,
+                new WallGrid(store(EntityStore.WALL, file.getWalls(), Wall.WALL_IMG)),
+                new PickupGrid(store(EntityStore.DOT, file.getDots(), Dot.DOT_IMG), Dot.DOT_IMG),
+                new PickupGrid(store(EntityStore.CHERRY, file.getCherries(), Cherry.CHERRY_IMG),
+                        Cherry.CHERRY_IMG),
+                new PickupGrid(store(EntityStore.PELLET, file.getPellets(), Pellet.PELLET_IMG),
+                        Pellet.PELLET_IMG));
+    }
+
+    private static EntityStore store(int type, LevelFile.Table table, Sprite sprite) {
+        EntityStore store = new EntityStore();
+        store.ensureCapacity(table.size());
+        for (int i = 0; i < table.size(); i++) {
+            store.add(type, table.getX(i), table.getY(i), sprite.getWidth(), sprite.getHeight());
+        }
+        return store;
+    }
+
+    /**
+     * The entry point for compiling world files.
+     */
+    public static void main(String[] args) {
+        String[] files = args.length > 0 ? args : DEFAULT_FILES;
+        for (String csv : files) {
+            try {
+                long start = System.nanoTime();
+                Path compiled = compile(csv);
+                System.out.printf("%s -> %s (%.1f ms)%n", csv, compiled,
+                        (System.nanoTime() - start) / 1e6);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,412 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The LevelFile class.
+ * The contents of a world file: where every entity starts, grouped by kind. Level builds its
+ * entities from this.
+ * <p></p>
+ * World files are written as csv (one "Entity,x,y" line per entity). Parsing text is slow on
+ * large maps, so LevelCompiler can compile a csv file into a binary file next to it (e.g.
+ * res/level0.csv into res/level0.bin), which load() prefers whenever it's up to date.
+ * The binary file is memory-mapped and its tables are copied straight into arrays; nothing
+ * is parsed per entity. It also holds the level's WallGrid and PickupGrids, so those aren't
+ * rebuilt either.
+ * <p></p>
+ * The binary file is:
+ * <ul>
+ *     <li>a header: MAGIC (int), VERSION (int)</li>
+ *     <li>the player: whether there is one (int), x and y (doubles)</li>
+ *     <li>the ghosts: count (int), one GHOST_* kind per ghost (bytes), then all x's and
+ *     all y's (doubles)</li>
+ *     <li>walls, dots, cherries and pellets, each as count (int), all x's, all y's</li>
+ *     <li>the grids, as written by WallGrid.write() and PickupGrid.write(): walls, dots,
+ *     cherries, then pellets</li>
+ * </ul>
+ * Every kind keeps the order of the csv file, which is the order ghosts get their random
+ * streams in, so a compiled level plays exactly like its csv file.
+ * <p></p>
+ * Once loaded, a LevelFile is never changed, so it can be shared by many levels and threads.
+ */
+public class LevelFile {
+    /** The first 4 bytes of every compiled level ("SPLV") */
+    public final static int MAGIC = 0x53504C56;
+    /** The version of the compiled format */
+    public final static int VERSION = 1;
+    /** The extension of world files */
+    public final static String CSV = ".csv";
+    /** The extension of compiled world files */
+    public final static String COMPILED = ".bin";
+
+    // ghost kinds, in the order of the csv names
+    /** A stationary red ghost ("Ghost") */
+    public final static byte GHOST = 0;
+    /** A moving red ghost */
+    public final static byte GHOST_RED = 1;
+    /** A blue ghost */
+    public final static byte GHOST_BLUE = 2;
+    /** A green ghost */
+    public final static byte GHOST_GREEN = 3;
+    /** A pink ghost */
+    public final static byte GHOST_PINK = 4;
+    /** An orange ghost */
+    public final static byte GHOST_ORANGE = 5;
+    private final static String[] GHOST_NAMES = {"Ghost", "GhostRed", "GhostBlue",
+            "GhostGreen", "GhostPink", "GhostOrange"};
+
+    // string values in the CSV file that represent the other entities
+    private final static String PLAYER = "Player";
+    private final static String WALL = "Wall";
+    private final static String DOT = "Dot";
+    private final static String CHERRY = "Cherry";
+    private final static String PELLET = "Pellet";
+
+    private boolean hasPlayer;
+    private double playerX;
+    private double playerY;
+    private final Table ghosts = new Table();
+    private byte[] ghostKinds = new byte[Table.INITIAL_CAPACITY];
+    private final Table walls = new Table();
+    private final Table dots = new Table();
+    private final Table cherries = new Table();
+    private final Table pellets = new Table();
+    // the compiled grids, or null if the walls and pickups still have to be indexed
+    private ByteBuffer grids;
+
+    /**
+     * The locations of one kind of entity, in file order.
+     */
+    public static class Table {
+        private final static int INITIAL_CAPACITY = 16;
+        private double[] x = new double[INITIAL_CAPACITY];
+        private double[] y = new double[INITIAL_CAPACITY];
+        private int size = 0;
+
+        private void add(double x, double y) {
+            if (size == this.x.length) {
+                this.x = Arrays.copyOf(this.x, size * 2);
+                this.y = Arrays.copyOf(this.y, size * 2);
+            }
+            this.x[size] = x;
+            this.y[size] = y;
+            size++;
+        }
+
+        /**
+         * A getter for the number of entities in the table.
+         * @return int the number of entities.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * A getter for an entity's starting x coordinate.
+         * @param i the index of the entity
+         * @return double the x coordinate of its top-left corner.
+         */
+        public double getX(int i) {
+            return x[i];
+        }
+
+        /**
+         * A getter for an entity's starting y coordinate.
+         * @param i the index of the entity
+         * @return double the y coordinate of its top-left corner.
+         */
+        public double getY(int i) {
+            return y[i];
+        }
+
+        private void write(ByteBuffer out) {
+            out.putInt(size);
+            out.asDoubleBuffer().put(x, 0, size).put(y, 0, size);
+            out.position(out.position() + 2 * size * Double.BYTES);
+        }
+
+        private void read(ByteBuffer in) {
+            size = in.getInt();
+            x = new double[size];
+            y = new double[size];
+            in.asDoubleBuffer().get(x).get(y);
+            in.position(in.position() + 2 * size * Double.BYTES);
+        }
+
+        private int byteSize() {
+            return Integer.BYTES + 2 * size * Double.BYTES;
+        }
+    }
+
+    private LevelFile() {}
+
+    /**
+     * Loads a world file, from its compiled file if there is one that is at least as new as
+     * the csv file, and from the csv file otherwise.
+     * @param csvFileName the csv world file, e.g. "res/level0.csv"
+     * @return LevelFile the contents of the world file
+     * @throws IOException if neither file can be read, or the file read is not a valid level
+     */
+    public static LevelFile load(String csvFileName) throws IOException {
+        Path csv = Paths.get(csvFileName);
+        Path compiled = compiledPath(csvFileName);
+        if (Files.exists(compiled) && (!Files.exists(csv)
+                || Files.getLastModifiedTime(compiled).compareTo(
+                        Files.getLastModifiedTime(csv)) >= 0)) {
+            return readCompiled(compiled);
+        }
+        return readCsv(csvFileName);
+    }
+
+    /**
+     * Works out where the compiled file of a world file goes.
+     * @param csvFileName the csv world file, e.g. "res/level0.csv"
+     * @return Path the compiled file, e.g. res/level0.bin
+     */
+    public static Path compiledPath(String csvFileName) {
+        String base = csvFileName.endsWith(CSV)
+                ? csvFileName.substring(0, csvFileName.length() - CSV.length()) : csvFileName;
+        return Paths.get(base + COMPILED);
+    }
+
+    /**
+     * Reads a csv world file. Lines with an unknown entity are skipped.
+     * @param fileName the csv world file
+     * @return LevelFile the contents of the world file
+     * @throws IOException if the file can't be read, has a line that isn't an entity and its
+     *                     coordinates, or has no player
+     */
+    public static LevelFile readCsv(String fileName) throws IOException {
+        LevelFile file = new LevelFile();
+        // code structure inspired by the code from lecture 8 slide 45
+        try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+            String text;
+            int line = 0;
+
+            // parse csv content
+            while ((text = br.readLine()) != null) {
+                line++;
+                if (text.trim().isEmpty()) continue;
+                String cells[] = text.split(",");
+                if (cells.length < 3) {
+                    throw new IOException(fileName + " line " + line
+                            + ": expected \"entity,x,y\", got \"" + text + "\"");
+                }
+                String entity = cells[0];
+                double x, y;
+                try {
+                    x = Double.parseDouble(cells[1]);
+                    y = Double.parseDouble(cells[2]);
+                } catch (NumberFormatException e) {
+                    throw new IOException(fileName + " line " + line + ": \"" + text
+                            + "\" has no valid coordinates", e);
+                }
+
+                if (entity.equals(PLAYER)) {
+                    file.hasPlayer = true;
+                    file.playerX = x;
+                    file.playerY = y;
+                } else if (entity.equals(WALL)) {
+                    file.walls.add(x, y);
+                } else if (entity.equals(DOT)) {
+                    file.dots.add(x, y);
+                } else if (entity.equals(CHERRY)) {
+                    file.cherries.add(x, y);
+                } else if (entity.equals(PELLET)) {
+                    file.pellets.add(x, y);
+                } else {
+                    for (byte kind = 0; kind < GHOST_NAMES.length; kind++) {
+                        if (entity.equals(GHOST_NAMES[kind])) {
+                            file.addGhost(kind, x, y);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        if (!file.hasPlayer) {
+            throw new IOException(fileName + " has no player");
+        }
+        return file;
+    }
+
+    /**
+     * Reads a compiled world file through a memory map.
+     * @param compiled the compiled world file
+     * @return LevelFile the contents of the world file, including its wall grid
+     * @throws IOException if the file can't be read, is not a valid compiled level, or has
+     *                     no player
+     */
+    public static LevelFile readCompiled(Path compiled) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(compiled, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        LevelFile file = new LevelFile();
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException(compiled + " is not a compiled level");
+            }
+            file.hasPlayer = in.getInt() != 0;
+            file.playerX = in.getDouble();
+            file.playerY = in.getDouble();
+            int ghostCount = in.getInt();
+            file.ghostKinds = new byte[ghostCount];
+            in.get(file.ghostKinds);
+            file.ghosts.x = new double[ghostCount];
+            file.ghosts.y = new double[ghostCount];
+            in.asDoubleBuffer().get(file.ghosts.x).get(file.ghosts.y);
+            in.position(in.position() + 2 * ghostCount * Double.BYTES);
+            file.ghosts.size = ghostCount;
+            file.walls.read(in);
+            file.dots.read(in);
+            file.cherries.read(in);
+            file.pellets.read(in);
+            file.grids = in.slice();
+        } catch (BufferUnderflowException e) {
+            throw new IOException(compiled + " is truncated", e);
+        }
+        if (!file.hasPlayer) {
+            throw new IOException(compiled + " has no player");
+        }
+        return file;
+    }
+
+    /**
+     * Writes this world file in the compiled format.
+     * @param compiled the file to write (it is overwritten)
+     * @param walls the wall grid built from this file's walls
+     * @param dots the grid built from this file's dots
+     * @param cherries the grid built from this file's cherries
+     * @param pellets the grid built from this file's pellets
+     * @throws IOException if the file can't be written
+     */
+    public void writeCompiled(Path compiled, WallGrid walls, PickupGrid dots,
+                              PickupGrid cherries, PickupGrid pellets) throws IOException {
+        int size = 3 * Integer.BYTES + 2 * Double.BYTES
+                + Integer.BYTES + ghosts.size * (1 + 2 * Double.BYTES)
+                + this.walls.byteSize() + this.dots.byteSize() + this.cherries.byteSize()
+                + this.pellets.byteSize() + walls.byteSize() + dots.byteSize()
+                + cherries.byteSize() + pellets.byteSize();
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(hasPlayer ? 1 : 0);
+        out.putDouble(playerX);
+        out.putDouble(playerY);
+        out.putInt(ghosts.size);
+        out.put(ghostKinds, 0, ghosts.size);
+        out.asDoubleBuffer().put(ghosts.x, 0, ghosts.size).put(ghosts.y, 0, ghosts.size);
+        out.position(out.position() + 2 * ghosts.size * Double.BYTES);
+        this.walls.write(out);
+        this.dots.write(out);
+        this.cherries.write(out);
+        this.pellets.write(out);
+        walls.write(out);
+        dots.write(out);
+        cherries.write(out);
+        pellets.write(out);
+        out.flip();
+
+        try (FileChannel channel = FileChannel.open(compiled, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+
+    private void addGhost(byte kind, double x, double y) {
+        if (ghosts.size == ghostKinds.length) {
+            ghostKinds = Arrays.copyOf(ghostKinds, ghosts.size * 2);
+        }
+        ghostKinds[ghosts.size] = kind;
+        ghosts.add(x, y);
+    }
+
+    /**
+     * A getter for the player's starting x coordinate.
+     * @return double the x coordinate of the player's top-left corner.
+     */
+    public double getPlayerX() {
+        return playerX;
+    }
+
+    /**
+     * A getter for the player's starting y coordinate.
+     * @return double the y coordinate of the player's top-left corner.
+     */
+    public double getPlayerY() {
+        return playerY;
+    }
+
+    /**
+     * A getter for the ghosts' starting locations.
+     * @return Table the ghosts, in file order.
+     */
+    public Table getGhosts() {
+        return ghosts;
+    }
+
+    /**
+     * A getter for a ghost's kind.
+     * @param i the index of the ghost in getGhosts()
+     * @return byte one of the GHOST_* kinds.
+     */
+    public byte getGhostKind(int i) {
+        return ghostKinds[i];
+    }
+
+    /**
+     * A getter for the walls' locations.
+     * @return Table the walls, in file order.
+     */
+    public Table getWalls() {
+        return walls;
+    }
+
+    /**
+     * A getter for the dots' locations.
+     * @return Table the dots, in file order.
+     */
+    public Table getDots() {
+        return dots;
+    }
+
+    /**
+     * A getter for the cherries' locations.
+     * @return Table the cherries, in file order.
+     */
+    public Table getCherries() {
+        return cherries;
+    }
+
+    /**
+     * A getter for the pellets' locations.
+     * @return Table the pellets, in file order.
+     */
+    public Table getPellets() {
+        return pellets;
+    }
+
+    /**
+     * A getter for the compiled grids, to be read in order with WallGrid.read() (walls) and
+     * PickupGrid.read() (dots, cherries, then pellets).
+     * @return ByteBuffer the grids, in a new buffer positioned at the start every time,
+     *         or null if the file was read from csv.
+     */
+    public ByteBuffer getGrids() {
+        return grids == null ? null : grids.duplicate();
+    }
+}
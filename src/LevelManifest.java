@@ -0,0 +1,125 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The LevelManifest class.
+ * The list of levels in the game, in the order they are played. The manifest is a csv file
+ * with one "world file,target score" line per level, e.g. "res/level0.csv,1210".
+ * <p></p>
+ * Loaded world files are kept as templates in a small least-recently-used cache, so
+ * starting a level that was played recently (or is being restarted) copies its template
+ * instead of reading the world file again, while a campaign of hundreds of levels only ever
+ * keeps the last few in memory. The cache can be used from several threads, e.g. to load the
+ * next level in the background.
+ */
+public class LevelManifest {
+    /** The manifest of the game's levels */
+    public final static String DEFAULT_FILE = "res/levels.csv";
+    private final static int CACHED_TEMPLATES = 8;
+
+    private final ArrayList<String> fileNames = new ArrayList<>();
+    private final ArrayList<Integer> targetScores = new ArrayList<>();
+    // world files by file name; in access order, so the eldest entry is the least recently used
+    private final Map<String, LevelFile> templates =
+            new LinkedHashMap<String, LevelFile>(CACHED_TEMPLATES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, LevelFile> eldest) {
+                    return size() > CACHED_TEMPLATES;
+                }
+            };
+
+    /**
+     * The constructor for LevelManifest. Reads the manifest file.
+     * @param fileName the manifest, a csv file
+     * @throws IOException if the manifest can't be read, or has a line that isn't a world
+     *                     file and a target score
+     */
+    public LevelManifest(String fileName) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+            String text;
+            int line = 0;
+            while ((text = br.readLine()) != null) {
+                line++;
+                if (text.trim().isEmpty()) continue;
+                String cells[] = text.split(",");
+                if (cells.length != 2) {
+                    throw new IOException(fileName + " line " + line
+                            + ": expected \"world file,target score\", got \"" + text + "\"");
+                }
+                int targetScore;
+                try {
+                    targetScore = Integer.parseInt(cells[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException(fileName + " line " + line + ": \"" + cells[1].trim()
+                            + "\" is not a target score", e);
+                }
+                fileNames.add(cells[0].trim());
+                targetScores.add(targetScore);
+            }
+        }
+    }
+
+    /**
+     * A getter for the number of levels in the manifest.
+     * @return int the number of levels.
+     */
+    public int size() {
+        return fileNames.size();
+    }
+
+    /**
+     * A getter for the world file of a level.
+     * @param number the level's position in the manifest, starting from 0
+     * @return String the world file, e.g. "res/level0.csv".
+     */
+    public String getFileName(int number) {
+        return fileNames.get(number);
+    }
+
+    /**
+     * A getter for the score required to win a level.
+     * @param number the level's position in the manifest, starting from 0
+     * @return int the target score.
+     */
+    public int getTargetScore(int number) {
+        return targetScores.get(number);
+    }
+
+    /**
+     * Creates a new level, copied from the cached template of its world file.
+     * @param number the level's position in the manifest, starting from 0
+     * @param seed the seed for all randomness in the level
+     * @return Level the new level
+     * @throws UncheckedIOException if the level's world file can't be loaded, e.g. it has a
+     *                              malformed line
+     */
+    public Level create(int number, long seed) {
+        try {
+            return new Level(template(fileNames.get(number)), targetScores.get(number), seed);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load level " + number + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+    // gets the template of a world file, loading it if it isn't cached
+    private LevelFile template(String fileName) throws IOException {
+        synchronized (templates) {
+            LevelFile template = templates.get(fileName);
+            if (template != null) {
+                return template;
+            }
+        }
+        // loaded outside the lock, so that a slow load doesn't hold up other levels
+        LevelFile template = LevelFile.load(fileName);
+        synchronized (templates) {
+            templates.put(fileName, template);
+        }
+        return template;
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.Arrays;
+
+/**
+ * The LevelSnapshot class.
+ * A copy of everything needed to draw a level after one tick: where the ghosts and pac are
+ * (and where they were one tick before, for interpolation), which pickups are left, the score,
+ * and whether the level has ended.
+ * <p></p>
+ * The simulation thread fills snapshots with Level.snapshot() and hands them to the window's
+ * thread, which draws them with Level.render(LevelSnapshot, double). A snapshot is never
+ * changed while it's being drawn; Simulation makes sure of that by keeping three of them
+ * (one being filled, one being drawn, and the latest finished one waiting in between).
+ * Snapshots are reused, so after the first one filling a snapshot allocates nothing.
+ */
+public class LevelSnapshot {
+    // the fields are filled in by Level.snapshot() (entities and score) and Simulation
+    // (tick and outcome), and read by Level.render()
+
+    // ghosts then pac, in the order of the level's ghosts
+    Sprite[] sprites = new Sprite[0];
+    double[] prevX = new double[0];
+    double[] prevY = new double[0];
+    double[] x = new double[0];
+    double[] y = new double[0];
+    double[] rotation = new double[0];
+    int actors = 0;
+
+    // which pickups are left, as copied by PickupGrid.copyAlive()
+    long[] dots = new long[0];
+    long[] cherries = new long[0];
+    long[] pellets = new long[0];
+
+    int score;
+    long tick;
+    long tickNanos;
+    char outcome = Level.PLAYING;
+
+    // makes room for the given number of ghosts and pac
+    void resize(int actors) {
+        if (sprites.length < actors) {
+            sprites = Arrays.copyOf(sprites, actors);
+            prevX = Arrays.copyOf(prevX, actors);
+            prevY = Arrays.copyOf(prevY, actors);
+            x = Arrays.copyOf(x, actors);
+            y = Arrays.copyOf(y, actors);
+            rotation = Arrays.copyOf(rotation, actors);
+        }
+        this.actors = actors;
+    }
+
+    /**
+     * A getter for the number of ticks the level had run when this snapshot was taken.
+     * @return long the tick count.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * A getter for the time this snapshot was taken, from System.nanoTime().
+     * @return long the time in nanoseconds.
+     */
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * A getter for the score when this snapshot was taken.
+     * @return int the score.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * A getter for how the level stood when this snapshot was taken.
+     * @return char Level.WIN, Level.PLAYING, or Level.LOSE if the player has no lives left.
+     */
+    public char getOutcome() {
+        return outcome;
+    }
+}
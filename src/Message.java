@@ -1,6 +1,9 @@
 import bagel.*;
 import bagel.util.*;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * The class that handles all in-game messages.
  * This could honestly be a singleton, but since I've heard bad things about it,
@@ -23,63 +26,98 @@ public class Message {
     private final static String LOSE = "GAME OVER!";
     private final static String SCORE = "SCORE";
 
-    // text to be drawn on the game
-    private Font gameText;
+    // where and how big the messages are drawn; made once here, as messages are drawn every frame
+    private final static Point TITLE_LOC = new Point(260, 250);
+    private final static Point START0_LOC_1 = new Point(260 + 60, 250 + 190);
+    private final static Point START0_LOC_2 = new Point(260 + 60 - 12, 250 + 190 + 40);
+    private final static int START0_SIZE = 24;
+    private final static Point START1_LOC_1 = new Point(200, 350);
+    private final static Point START1_LOC_2 = new Point(200 - 23, 350 + 60);
+    private final static Point START1_LOC_3 = new Point(200 - 46, 350 + 120);
+    private final static int START1_SIZE = 40;
+    private final static Point PROFILE_LOC = new Point(640, 25);
+    private final static int PROFILE_SIZE = 10;
+    private final static Point SCORE_LOC = new Point(25, 25);
+    private final static int SCORE_SIZE = 20;
+
+    // loading a font reads the .ttf file and builds its glyphs, so every size is only loaded once
+    // and then shared by all messages
+    private final static Map<Integer, Font> FONTS = new HashMap<>();
+
+    // the last centred text, and where it was drawn. Measuring text is not free, and the same
+    // message is drawn every frame, so it is only measured again when the text changes
+    private String centredText;
+    private int centredSize;
+    private double centredX;
+    private double centredY;
+
+    // the score text is only rebuilt when the score changes
+    private int lastScore = -1;
+    private String scoreText;
+
+    // all text drawing is timed as the HUD phase
+    private FrameProfiler profiler = FrameProfiler.DISABLED;
+
+    // gets the font of the given size, loading it the first time it's needed.
+    private static Font font(int fontSize) {
+        return FONTS.computeIfAbsent(fontSize, size -> new Font(Message.FONT, size));
+    }
 
     // draw text at given x and y coordinates.
     private void drawText(String text, double x, double y, int fontSize) {
-        gameText = new Font(Message.FONT, fontSize);
-        gameText.drawString(text, x, y);
+        long start = profiler.start();
+        font(fontSize).drawString(text, x, y);
+        profiler.stop(FrameProfiler.HUD, start);
     }
 
     // if x and y coordinates are not specified, draw at center.
     // note: no longer centered if text consists of multiple lines (\n),
     // because Bagel automatically left-aligns the text.
     private void drawText(String text, int fontSize) {
-        gameText = new Font(Message.FONT, fontSize);
-        double xCenter = Window.getWidth() / 2.0;
-        double yCenter = Window.getHeight() / 2.0;
-        xCenter = xCenter - (gameText.getWidth(text) / 2.0);
-        yCenter = yCenter + (fontSize / 2.0);
-        gameText.drawString(text, xCenter, yCenter);
+        long start = profiler.start();
+        Font gameText = font(fontSize);
+        if (!text.equals(centredText) || fontSize != centredSize) {
+            double xCenter = Window.getWidth() / 2.0;
+            double yCenter = Window.getHeight() / 2.0;
+            centredX = xCenter - (gameText.getWidth(text) / 2.0);
+            centredY = yCenter + (fontSize / 2.0);
+            centredText = text;
+            centredSize = fontSize;
+        }
+        gameText.drawString(text, centredX, centredY);
+        profiler.stop(FrameProfiler.HUD, start);
+    }
+
+    /**
+     * Turns on timing of all text drawn by this message.
+     * @param profiler the profiler to record the time into
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
     }
 
     /**
      * draws the instruction message before level 0 starts.
      */
     public void drawStart0() {
-        Point TITLE_LOC = new Point(260, 250);
-        Point INSTRUCTIONS_1_LOC = new Point(260 + 60, 250 + 190);
-        Point INSTRUCTIONS_2_LOC = new Point(260 + 60 - 12, 250 + 190 + 40);
-        int INSTRUCTIONS_SIZE = 24;
-
         // SHADOW PAC
         drawText(TITLE, TITLE_LOC.x, TITLE_LOC.y, DEFAULT_SIZE);
         // PRESS SPACE TO START
-        drawText(INSTRUCTIONS_1, INSTRUCTIONS_1_LOC.x, INSTRUCTIONS_1_LOC.y,
-                INSTRUCTIONS_SIZE);
+        drawText(INSTRUCTIONS_1, START0_LOC_1.x, START0_LOC_1.y, START0_SIZE);
         // USE ARROW KEYS TO MOVE
-        drawText(INSTRUCTIONS_2, INSTRUCTIONS_2_LOC.x, INSTRUCTIONS_2_LOC.y,
-                INSTRUCTIONS_SIZE);
+        drawText(INSTRUCTIONS_2, START0_LOC_2.x, START0_LOC_2.y, START0_SIZE);
     }
 
     /**
      * draws the instruction message before level 1 starts.
      */
     public void drawStart1() {
-        Point INSTRUCTIONS_1_LOC = new Point(200, 350);
-        Point INSTRUCTIONS_2_LOC = new Point(200 - 23, 350 + 60);
-        Point INSTRUCTIONS_3_LOC = new Point(200 - 46, 350 + 120);
-        int INSTRUCTIONS_SIZE = 40;
-
         // PRESS SPACE TO START
-        drawText(INSTRUCTIONS_1, INSTRUCTIONS_1_LOC.x, INSTRUCTIONS_1_LOC.y,
-                INSTRUCTIONS_SIZE);
+        drawText(INSTRUCTIONS_1, START1_LOC_1.x, START1_LOC_1.y, START1_SIZE);
         // USE ARROW KEYS TO MOVE
-        drawText(INSTRUCTIONS_2, INSTRUCTIONS_2_LOC.x, INSTRUCTIONS_2_LOC.y,
-                INSTRUCTIONS_SIZE);
-        drawText(INSTRUCTIONS_3, INSTRUCTIONS_3_LOC.x, INSTRUCTIONS_3_LOC.y,
-                INSTRUCTIONS_SIZE);
+        drawText(INSTRUCTIONS_2, START1_LOC_2.x, START1_LOC_2.y, START1_SIZE);
+        // EAT THE PELLET TO ATTACK
+        drawText(INSTRUCTIONS_3, START1_LOC_3.x, START1_LOC_3.y, START1_SIZE);
     }
 
     /**
@@ -103,15 +141,23 @@ public class Message {
         drawText(LEVEL_COMPLETE, DEFAULT_SIZE);
     }
 
+    /**
+     * Draws the frame profiler's overlay (a table of phase times) in the top-right corner.
+     * @param text the table to draw
+     */
+    public void drawProfile(String text) {
+        drawText(text, PROFILE_LOC.x, PROFILE_LOC.y, PROFILE_SIZE);
+    }
+
     /**
      * Draws the amount of score the player has.
      */
     public void drawScore(int score) {
-        Point SCORE_LOC = new Point(25, 25);
-        int SCORE_SIZE = 20;
-
-        drawText(SCORE + " " + Integer.toString(score), SCORE_LOC.x
-                , SCORE_LOC.y, SCORE_SIZE);
+        if (score != lastScore) {
+            scoreText = SCORE + " " + Integer.toString(score);
+            lastScore = score;
+        }
+        drawText(scoreText, SCORE_LOC.x, SCORE_LOC.y, SCORE_SIZE);
     }
 
 }
@@ -1,7 +1,7 @@
 import bagel.*;
 import bagel.util.*;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 
 /**
  * An extension of the Entity class.
@@ -18,20 +18,46 @@ public abstract class MovableEntity extends Entity {
     public final static double FACING_LEFT = Math.PI;
     /** Specifies the up direction the entity is facing. */
     public final static double FACING_UP = 1.5 * Math.PI;
+
+    // directions are stored as codes, in the order of the FACING_* angles, so that a move is
+    // two table lookups instead of comparing angles
+    /** The code of the right direction */
+    public final static int DIR_RIGHT = 0;
+    /** The code of the down direction */
+    public final static int DIR_DOWN = 1;
+    /** The code of the left direction */
+    public final static int DIR_LEFT = 2;
+    /** The code of the up direction */
+    public final static int DIR_UP = 3;
+    // by code: the angle, and the step in x and y of moving one unit that way
+    private final static double[] FACINGS = {FACING_RIGHT, FACING_DOWN, FACING_LEFT, FACING_UP};
+    final static int[] DX = {1, 0, -1, 0};
+    final static int[] DY = {0, 1, 0, -1};
+    // draw options are only read during draw(), so all entities can share one
+    private final static DrawOptions DRAW_OPTIONS = new DrawOptions();
     private double facingCurr = FACING_RIGHT;  // default value is 0, which is facing right
     private final Point startingLoc;
-    private double speed;
 
     /**
      * The constructor for MovableEntity.
-     * @param image the image of this entity
+     * @param image the sprite of this entity
+     * @param store the store holding the state of this entity
+     * @param type the type of this entity, e.g. EntityStore.PAC
      * @param loc the starting location of this entity
      * @param speed the moving speed of this entity
      */
-    public MovableEntity(Image image, Point loc, double speed) {
-        super(image, loc);
+    public MovableEntity(Sprite image, EntityStore store, int type, Point loc, double speed) {
+        super(image, store, type, loc);
         this.startingLoc = new Point(loc.x, loc.y);
-        this.speed = speed;
+        setSpeed(speed);
+    }
+
+    /**
+     * A getter for move speed.
+     * @return double the current speed value.
+     */
+    public double getSpeed() {
+        return super.getStore().getSpeed(super.getIndex());
     }
 
     /**
@@ -39,118 +65,187 @@ public abstract class MovableEntity extends Entity {
      * @param speed the new speed value.
      */
     public void setSpeed(double speed) {
-        this.speed = speed;
+        super.getStore().setSpeed(super.getIndex(), speed);
+    }
+
+    /**
+     * A getter for the direction this entity moves towards.
+     * @return double one of the FACING_* values.
+     */
+    public double getDirection() {
+        return toFacing(super.getStore().getDirection(super.getIndex()));
+    }
+
+    /**
+     * A setter for the direction this entity moves towards.
+     * @param direction one of the FACING_* values.
+     */
+    public void setDirection(double direction) {
+        super.getStore().setDirection(super.getIndex(), toCode(direction));
+    }
+
+    /**
+     * Converts a direction code into the angle of that direction.
+     * @param code one of the DIR_* codes
+     * @return double the matching FACING_* value.
+     */
+    public static double toFacing(int code) {
+        return FACINGS[code];
+    }
+
+    /**
+     * Converts the angle of a direction into its code.
+     * @param facing one of the FACING_* values
+     * @return int the matching DIR_* code.
+     */
+    public static int toCode(double facing) {
+        for (int code = 0; code < FACINGS.length; code++) {
+            if (FACINGS[code] == facing) return code;
+        }
+        throw new IllegalArgumentException("Not a FACING_* direction: " + facing);
+    }
+
+    /**
+     * Gets the opposite of a direction, e.g. left for right.
+     * @param code one of the DIR_* codes
+     * @return int the code of the opposite direction.
+     */
+    public static int reverse(int code) {
+        return (code + 2) % FACINGS.length;
     }
 
 
+    /**
+     * A getter for the direction this entity is drawn facing, after the last move.
+     * @return double one of the FACING_* values.
+     */
+    public double getFacing() {
+        return facingCurr;
+    }
+
     /**
      * Draws entity based on the direction it's facing
      * after the last move, overriding draw() from Entity class.
      */
     @Override
     public void draw() {
-        DrawOptions options = new DrawOptions();
-        options.setRotation(facingCurr);
-        super.draw(options);
+        DRAW_OPTIONS.setRotation(facingCurr);
+        super.draw(DRAW_OPTIONS);
+    }
+
+    /**
+     * Queues entity to be drawn based on the direction it's facing after the last move.
+     * @param queue the render queue of the frame
+     * @param layer the layer to draw the entity in, e.g. RenderQueue.ACTORS
+     */
+    @Override
+    public void draw(RenderQueue queue, int layer) {
+        queue.add(layer, super.getSprite(), getX(), getY(), facingCurr);
     }
 
     /**
-     * The difference between move() and draw() is that in a frame,
-     * move is called when an entity moves to a certain direction, whereas
-     * draw is only called when an entity remains still in that particular frame.
+     * Moves entity to a location where it does not intersect with any wall.
+     * If it intersects, or would pass through a wall on the way there (at a high speed),
+     * the entity stays in place and doesn't move.
      *
      * @param moveDirection the direction this entity is going to move towards
+     * @param walls the spatial index of the walls that prevent this entity from moving through
      * @param rotation a true or false parameter -- true if moving
      *                 to a certain direction will cause the entity to rotate
      *                 towards that direction, false if the entity never rotates
+     * @return boolean false if it moves to a non-empty spot (i.e., if it moves, it
+     *         would have intersected with a wall), true otherwise
+     */
+    public boolean moveToEmpty(double moveDirection, WallGrid walls, boolean rotation) {
+        return moveToEmpty(moveDirection, walls, rotation, 1) == 1;
+    }
+
+    /**
+     * Moves entity by its speed towards the given direction as many times in a row as
+     * given, in one go: the same as calling moveToEmpty() that many times, but with one sweep
+     * of the walls. The entity stops at the last spot before the first move that would hit
+     * a wall.
+     *
+     * @param moveDirection the direction this entity is going to move towards
+     * @param walls the spatial index of the walls that prevent this entity from moving through
+     * @param rotation true if moving will cause the entity to rotate towards the direction
+     * @param steps the number of moves
+     * @return int the number of moves made before hitting a wall (steps if none was hit)
      */
-    private void move(Double moveDirection, boolean rotation) {
+    public int moveToEmpty(double moveDirection, WallGrid walls, boolean rotation, int steps) {
+        // the direction the entity is facing changes even if it hits a wall
         if (rotation) facingCurr = moveDirection;
-        Point currLoc = super.getLocation();
-        Point newLoc = null;
+        return moveToEmpty(super.getStore(), super.getIndex(), toCode(moveDirection), walls,
+                steps);
+    }
 
-        // edge case: if entity is off-screen, don't move
-        if (currLoc.equals(Entity.OFF_SCREEN)) {
-            return;
-        }
+    /**
+     * Moves an entity in a store by its speed towards the given direction as many times in a
+     * row as given, like moveToEmpty(), but straight in the store (e.g. for GhostKernel).
+     *
+     * @param store the store holding the entity
+     * @param i the index of the entity
+     * @param code the direction, one of the DIR_* codes
+     * @param walls the spatial index of the walls that prevent the entity from moving through
+     * @param steps the number of moves
+     * @return int the number of moves made before hitting a wall (steps if none was hit)
+     */
+    static int moveToEmpty(EntityStore store, int i, int code, WallGrid walls, int steps) {
+        double speed = store.getSpeed(i);
+        double x = store.getX(i);
+        double y = store.getY(i);
+        double width = store.getWidth(i);
+        double height = store.getHeight(i);
 
-        // otherwise, move as normal
-        if (moveDirection == FACING_RIGHT) {
-            newLoc = new Point(currLoc.x + speed, currLoc.y);
-        } else if (moveDirection == FACING_LEFT) {
-            newLoc = new Point(currLoc.x - speed, currLoc.y);
-        } else if (moveDirection == FACING_UP) {
-            newLoc = new Point(currLoc.x, currLoc.y - speed);
-        } else if (moveDirection == FACING_DOWN) {
-            newLoc = new Point(currLoc.x, currLoc.y + speed);
+        // To prevent the entity from intersecting with a wall, need to check the way
+        // the entity is about to move along before it makes the move,
+        // and prevent the entity from making moves that hit a wall.
+        int moved = 0;
+        double free = walls.sweep(x, y, width, height, code, speed * steps);
+        if (free >= 0) {
+            moved = speed == 0 ? steps : (int) Math.min(steps, Math.floor(free / speed));
+        } else {
+            // already in a wall (e.g. placed there by the world file): a move is only
+            // allowed if it ends up out of every wall
+            while (moved < steps && !walls.intersects(x + DX[code] * (speed * (moved + 1)),
+                    y + DY[code] * (speed * (moved + 1)), width, height)) {
+                moved++;
+            }
         }
+        // moving does not draw the entity; drawing is done separately by the level's
+        // render pass, so that a level can be simulated without a window
+        store.setLocation(i, x + DX[code] * (speed * moved), y + DY[code] * (speed * moved));
+        return moved;
+    }
 
-        super.setLocation(newLoc);
-        draw();
+    /**
+     * Writes the state of this entity that isn't in its store (e.g. for Level.saveState()).
+     * Subclasses with more state add theirs after this.
+     * @param out the buffer to write stateSize() bytes into
+     */
+    public void writeState(ByteBuffer out) {
+        out.put((byte) toCode(facingCurr));
     }
 
     /**
-     * Moves entity to a location where it does not intersect with other specified entities.
-     * If it intersects, the entity stays in place and doesn't move.
-     *
-     * @param moveDirection the direction this entity is going to move towards
-     * @param entities the entities that prevent this entity from moving through
-     * @param rotation a true or false parameter -- true if moving
-     *                 to a certain direction will cause the entity to rotate
-     *                 towards that direction, false if the entity never rotates
-     * @return boolean false if it moves to a non-empty spot (i.e., if it moves, it
-     *         would have intersected with another entity), true otherwise
-     */
-    public boolean moveToEmpty(Double moveDirection, ArrayList<? extends Entity> entities,
-                               boolean rotation) {
-        double x = super.getLocation().x;
-        double y = super.getLocation().y;
-        boolean empty = true;
-
-        // To prevent the entity from intersecting with another entity, need to check for
-        // the entity's all possible moves before the player makes a move,
-        // and prevent the entity from making moves that hit another entity.
-        Rectangle rightMove = new Rectangle(x + speed, y,
-                super.getImage().getWidth(), super.getImage().getHeight());
-        Rectangle leftMove = new Rectangle(x - speed, y,
-                super.getImage().getWidth(), super.getImage().getHeight());
-        Rectangle downMove = new Rectangle(x, y + speed,
-                super.getImage().getWidth(), super.getImage().getHeight());
-        Rectangle upMove = new Rectangle(x, y - speed,
-                super.getImage().getWidth(), super.getImage().getHeight());
-
-        for (Entity e : entities) {
-            if (e != null) {
-                Rectangle bound = e.getBoundingBox();
-                if (moveDirection == FACING_RIGHT && bound.intersects(rightMove)) {
-                    // if the entity hits another specified entity, the entity does not move
-                    // but the direction the entity is facing still changes.
-                    if (rotation) facingCurr = FACING_RIGHT;
-                    draw();
-                    empty = false;
-                } else if (moveDirection == FACING_LEFT && bound.intersects(leftMove)) {
-                    if (rotation) facingCurr = FACING_LEFT;
-                    draw();
-                    empty = false;
-                } else if (moveDirection == FACING_UP && bound.intersects(upMove)) {
-                    if (rotation) facingCurr = FACING_UP;
-                    draw();
-                    empty = false;
-                } else if (moveDirection == FACING_DOWN && bound.intersects(downMove)) {
-                    if (rotation) facingCurr = FACING_DOWN;
-                    draw();
-                    empty = false;
-                }
-            }
-        }
-        if (empty) move(moveDirection, rotation);
-        return empty;
+     * Puts back the state written by writeState().
+     * @param in the buffer to read stateSize() bytes from
+     */
+    public void readState(ByteBuffer in) {
+        facingCurr = toFacing(in.get());
+    }
+
+    /**
+     * A getter for the number of bytes writeState() writes.
+     * @return int the size in bytes.
+     */
+    public int stateSize() {
+        return 1;
     }
 
     /** Moves entity to its starting position. */
     public void moveToStart() {
         facingCurr = FACING_RIGHT;  // revert facingCurr to default
         super.setLocation(startingLoc);
-        super.draw();
     }
 }
@@ -1,7 +1,7 @@
 import bagel.*;
 import bagel.util.*;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 
 /**
  * The Pac class. A subclass to MovableEntity.
@@ -10,25 +10,26 @@ import java.util.ArrayList;
 public class Pac extends MovableEntity {
     private final static int SPEED = 3;
     private final static int FRENZY_SPEED = 1;
-    private final static Image PAC_IMG = new Image("res/pac.png");
-    private final Image PAC_OPEN_IMG = new Image("res/pacOpen.png");
+    private final static Sprite PAC_IMG = Assets.sprite("res/pac.png");
+    private final static Sprite PAC_OPEN_IMG = Assets.sprite("res/pacOpen.png");
     private boolean isOpen = false;
 
     /**
      * The constructor for Pac.
+     * @param store the store holding the state of pac
      * @param loc the initial location of pac
      */
-    public Pac(Point loc) {
-        super(PAC_IMG, loc, SPEED);
+    public Pac(EntityStore store, Point loc) {
+        super(PAC_IMG, store, EntityStore.PAC, loc, SPEED);
     }
 
     /** Switches image from pac.png to pacOpen.png, or vice versa. */
     public void switchOpen() {
         if (!isOpen) {
-            super.setImage(PAC_OPEN_IMG);
+            super.setSprite(PAC_OPEN_IMG);
             isOpen = true;
         } else {
-            super.setImage(PAC_IMG);
+            super.setSprite(PAC_IMG);
             isOpen = false;
         }
     }
@@ -37,10 +38,49 @@ public class Pac extends MovableEntity {
      * @param moveDirection the move direction.
      * @param walls the walls preventing pac from moving through.
      */
-    public void move(double moveDirection, ArrayList<Wall> walls) {
+    public void move(double moveDirection, WallGrid walls) {
         moveToEmpty(moveDirection, walls, true);
     }
 
+    /** Moves pac by several ticks at once, stopping at the first wall in the way.
+     * @param moveDirection the move direction.
+     * @param walls the walls preventing pac from moving through.
+     * @param ticks the number of ticks to move pac by.
+     */
+    public void move(double moveDirection, WallGrid walls, int ticks) {
+        moveToEmpty(moveDirection, walls, true, ticks);
+    }
+
+    /**
+     * Writes the state of pac that isn't in its store, including whether its mouth is open.
+     * @param out the buffer to write stateSize() bytes into
+     */
+    @Override
+    public void writeState(ByteBuffer out) {
+        super.writeState(out);
+        out.put(isOpen ? (byte) 1 : 0);
+    }
+
+    /**
+     * Puts back the state written by writeState().
+     * @param in the buffer to read stateSize() bytes from
+     */
+    @Override
+    public void readState(ByteBuffer in) {
+        super.readState(in);
+        isOpen = in.get() != 0;
+        super.setSprite(isOpen ? PAC_OPEN_IMG : PAC_IMG);
+    }
+
+    /**
+     * A getter for the number of bytes writeState() writes.
+     * @return int the size in bytes.
+     */
+    @Override
+    public int stateSize() {
+        return super.stateSize() + 1;
+    }
+
     /** Changes pac behaviour for frenzy mode. */
     public void activateFrenzy() {
         super.setSpeed(SPEED + FRENZY_SPEED);
@@ -5,13 +5,15 @@ import bagel.util.*;
  * The Pellet class. A subclass to Entity.
  */
 public class Pellet extends Entity {
-    private final static Image PELLET_IMG = new Image("res/pellet.png");
+    /** The sprite every pellet is drawn with. */
+    public final static Sprite PELLET_IMG = Assets.sprite("res/pellet.png");
 
     /**
      * The constructor for Pellet.
+     * @param store the store holding the state of this pellet
      * @param loc the initial location of pellet
      */
-    public Pellet(Point loc) {
-        super(PELLET_IMG, loc);
+    public Pellet(EntityStore store, Point loc) {
+        super(PELLET_IMG, store, EntityStore.PELLET, loc);
     }
 }
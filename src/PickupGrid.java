@@ -0,0 +1,377 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The PickupGrid class.
+ * Stores the pickups of one kind in a level (e.g. all dots), bucketed in a uniform grid so that
+ * finding the pickup the player is colliding with only checks the few cells around the player,
+ * no matter how many pickups there are on the map.
+ * <p></p>
+ * The location and size of every pickup are read from the pickups' EntityStore, and all of them
+ * are drawn with the same sprite, so no objects are needed for the pickups themselves.
+ * Pickups never move, so the grid is built once when the level is loaded. Eaten pickups are
+ * never removed from the buckets (which would mean shifting arrays); instead their bit is cleared
+ * in a bitmap of pickups that are still alive. The bitmap is a plain array of 64-bit words,
+ * so copying it (into a LevelSnapshot, or a saved level state) is a single array copy.
+ * Like WallGrid, a grid can be written into a compiled level and read back without
+ * building it again.
+ */
+public class PickupGrid {
+    private final EntityStore store;
+    private final Sprite sprite;
+    // bit i of the words is set if pickup i is alive
+    private final long[] alive;
+    private int aliveCount;
+
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    // each pickup is bucketed by its top-left corner only. The pickup indices of cell c are
+    // cellItems[cellStart[c]] up to (but not including) cellItems[cellStart[c + 1]]
+    private final int[] cellStart;
+    private final int[] cellItems;
+
+    /**
+     * The constructor for PickupGrid. Builds the grid from the given pickups.
+     * The cell size is the size of the largest pickup.
+     * @param store the store holding the pickups, which all start alive
+     * @param sprite the sprite every pickup is drawn with
+     */
+    public PickupGrid(EntityStore store, Sprite sprite) {
+        this.store = store;
+        this.sprite = sprite;
+        int n = store.size();
+        alive = allAlive(n);
+        aliveCount = n;
+
+        double minX = 0, minY = 0, maxX = 0, maxY = 0, size = 1;
+        for (int i = 0; i < n; i++) {
+            double x = store.getX(i), y = store.getY(i);
+            if (i == 0 || x < minX) minX = x;
+            if (i == 0 || y < minY) minY = y;
+            if (i == 0 || x > maxX) maxX = x;
+            if (i == 0 || y > maxY) maxY = y;
+            size = Math.max(size, Math.max(store.getWidth(i), store.getHeight(i)));
+        }
+        originX = minX;
+        originY = minY;
+        cellSize = size;
+        cols = (int) Math.floor((maxX - minX) / cellSize) + 1;
+        rows = (int) Math.floor((maxY - minY) / cellSize) + 1;
+
+        // first pass counts the pickups per cell, second pass fills them in
+        cellStart = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            cellStart[cell(i) + 1]++;
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellItems = new int[n];
+        int[] fill = new int[cols * rows];
+        for (int i = 0; i < n; i++) {
+            int c = cell(i);
+            cellItems[cellStart[c] + fill[c]++] = i;
+        }
+    }
+
+    // the grid read from a compiled level
+    private PickupGrid(EntityStore store, Sprite sprite, double originX, double originY,
+                       double cellSize, int cols, int rows, int[] cellStart, int[] cellItems) {
+        this.store = store;
+        this.sprite = sprite;
+        int n = store.size();
+        alive = allAlive(n);
+        aliveCount = n;
+        this.originX = originX;
+        this.originY = originY;
+        this.cellSize = cellSize;
+        this.cols = cols;
+        this.rows = rows;
+        this.cellStart = cellStart;
+        this.cellItems = cellItems;
+    }
+
+    private static long[] allAlive(int n) {
+        long[] words = new long[(n + Long.SIZE - 1) / Long.SIZE];
+        for (int i = 0; i < n; i++) {
+            words[i / Long.SIZE] |= 1L << i;
+        }
+        return words;
+    }
+
+    /**
+     * Reads a grid written by write(). The pickups must be the same as when it was written.
+     * @param store the store holding the pickups, which all start alive
+     * @param sprite the sprite every pickup is drawn with
+     * @param in the buffer to read from, positioned at the grid
+     * @return PickupGrid the grid
+     */
+    public static PickupGrid read(EntityStore store, Sprite sprite, ByteBuffer in) {
+        double originX = in.getDouble();
+        double originY = in.getDouble();
+        double cellSize = in.getDouble();
+        int cols = in.getInt();
+        int rows = in.getInt();
+        int[] cellStart = new int[cols * rows + 1];
+        in.asIntBuffer().get(cellStart);
+        in.position(in.position() + cellStart.length * Integer.BYTES);
+        int[] cellItems = new int[cellStart[cols * rows]];
+        in.asIntBuffer().get(cellItems);
+        in.position(in.position() + cellItems.length * Integer.BYTES);
+        return new PickupGrid(store, sprite, originX, originY, cellSize, cols, rows, cellStart,
+                cellItems);
+    }
+
+    /**
+     * Writes this grid, to be read back with read(). Which pickups are alive is not written.
+     * @param out the buffer to write into, which must have byteSize() bytes left
+     */
+    public void write(ByteBuffer out) {
+        out.putDouble(originX);
+        out.putDouble(originY);
+        out.putDouble(cellSize);
+        out.putInt(cols);
+        out.putInt(rows);
+        out.asIntBuffer().put(cellStart);
+        out.position(out.position() + cellStart.length * Integer.BYTES);
+        out.asIntBuffer().put(cellItems);
+        out.position(out.position() + cellItems.length * Integer.BYTES);
+    }
+
+    /**
+     * A getter for the number of bytes write() writes.
+     * @return int the size in bytes.
+     */
+    public int byteSize() {
+        return 3 * Double.BYTES + 2 * Integer.BYTES
+                + (cellStart.length + cellItems.length) * Integer.BYTES;
+    }
+
+    private int cell(int i) {
+        return row(store.getY(i)) * cols + col(store.getX(i));
+    }
+
+    private int col(double x) {
+        return Math.min(cols - 1, Math.max(0, (int) Math.floor((x - originX) / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.min(rows - 1, Math.max(0, (int) Math.floor((y - originY) / cellSize)));
+    }
+
+    /**
+     * Finds an alive pickup that collides with the given entity.
+     * @param entity the entity to be checked for collision
+     * @return int the index of the colliding pickup, or -1 if none are colliding. If several
+     *         are colliding, the lowest index is returned, like Entity.isColliding(ArrayList).
+     */
+    public int isColliding(Entity entity) {
+        return isColliding(entity.getX(), entity.getY(), entity.getWidth(),
+                entity.getHeight());
+    }
+
+    /**
+     * Finds an alive pickup that collides with the given box.
+     * @param x the left of the box
+     * @param y the top of the box
+     * @param width the width of the box
+     * @param height the height of the box
+     * @return int the index of the colliding pickup with the lowest index, or -1 if none are
+     *         colliding.
+     */
+    public int isColliding(double x, double y, double width, double height) {
+        // a pickup whose top-left corner is up to one cell left of or above the entity
+        // can still reach into it
+        int col0 = col(x - cellSize), col1 = col(x + width);
+        int row0 = row(y - cellSize), row1 = row(y + height);
+        int found = -1;
+        for (int r = row0; r <= row1; r++) {
+            for (int c = col0; c <= col1; c++) {
+                int cell = r * cols + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    if ((found < 0 || i < found) && isAlive(i)
+                            && store.intersects(i, x, y, width, height)) {
+                        found = i;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Removes a pickup from the map (i.e., it's been eaten).
+     * @param i the index of the pickup
+     */
+    public void remove(int i) {
+        if (isAlive(i)) {
+            alive[i / Long.SIZE] &= ~(1L << i);
+            aliveCount--;
+        }
+    }
+
+    private boolean isAlive(int i) {
+        return (alive[i / Long.SIZE] & (1L << i)) != 0;
+    }
+
+    /**
+     * Removes every pickup that collides with the given box, e.g. all pickups along the way
+     * an entity has swept through.
+     * @param x the left of the box
+     * @param y the top of the box
+     * @param width the width of the box
+     * @param height the height of the box
+     * @return int the number of pickups removed.
+     */
+    public int removeAll(double x, double y, double width, double height) {
+        int removed = collideAll(x, y, width, height, true);
+        aliveCount -= removed;
+        return removed;
+    }
+
+    /**
+     * Counts the alive pickups that collide with the given box, without removing them.
+     * @param x the left of the box
+     * @param y the top of the box
+     * @param width the width of the box
+     * @param height the height of the box
+     * @return int the number of colliding pickups.
+     */
+    public int countColliding(double x, double y, double width, double height) {
+        return collideAll(x, y, width, height, false);
+    }
+
+    // counts the alive pickups colliding with a box, clearing their bits if remove is set.
+    // walks the same cells as isColliding(), once
+    private int collideAll(double x, double y, double width, double height, boolean remove) {
+        int col0 = col(x - cellSize), col1 = col(x + width);
+        int row0 = row(y - cellSize), row1 = row(y + height);
+        int found = 0;
+        for (int r = row0; r <= row1; r++) {
+            for (int c = col0; c <= col1; c++) {
+                int cell = r * cols + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    if (isAlive(i) && store.intersects(i, x, y, width, height)) {
+                        if (remove) {
+                            alive[i / Long.SIZE] &= ~(1L << i);
+                        }
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Copies which pickups are still on the map, e.g. into a LevelSnapshot.
+     * @param into the bitmap to copy into, which is reused if it is big enough
+     * @return long[] the copy (into, or a new array if into was too small); bit i of the
+     *         words is set if pickup i is alive
+     */
+    public long[] copyAlive(long[] into) {
+        if (into == null || into.length < alive.length) {
+            into = new long[alive.length];
+        }
+        System.arraycopy(alive, 0, into, 0, alive.length);
+        return into;
+    }
+
+    /**
+     * Writes which pickups are still on the map as a bitmap at a fixed place in a buffer,
+     * e.g. for Level.observe(). The buffer's position is not changed.
+     * @param out the buffer to write getAliveWords() longs into
+     * @param index the byte index in the buffer to write the first long at
+     * @return int the byte index just after the bitmap.
+     */
+    public int writeAlive(ByteBuffer out, int index) {
+        for (long word : alive) {
+            out.putLong(index, word);
+            index += Long.BYTES;
+        }
+        return index;
+    }
+
+    /**
+     * A getter for the length of the bitmap of alive pickups, e.g. for writeAlive().
+     * @return int the number of longs in the bitmap.
+     */
+    public int getAliveWords() {
+        return alive.length;
+    }
+
+    /**
+     * Writes which pickups are still on the map, e.g. for Level.saveState().
+     * @param out the buffer to write stateSize() bytes into
+     */
+    public void writeState(ByteBuffer out) {
+        out.putInt(aliveCount);
+        for (long word : alive) {
+            out.putLong(word);
+        }
+    }
+
+    /**
+     * Puts back the pickups that were on the map when writeState() was called.
+     * @param in the buffer to read stateSize() bytes from
+     */
+    public void readState(ByteBuffer in) {
+        aliveCount = in.getInt();
+        for (int w = 0; w < alive.length; w++) {
+            alive[w] = in.getLong();
+        }
+    }
+
+    /**
+     * A getter for the number of bytes writeState() writes.
+     * @return int the size in bytes.
+     */
+    public int stateSize() {
+        return Integer.BYTES + alive.length * Long.BYTES;
+    }
+
+    /**
+     * A getter for how many pickups are still on the map.
+     * @return int the number of alive pickups.
+     */
+    public int size() {
+        return aliveCount;
+    }
+
+    /** Draws all pickups that are still on the map. */
+    public void draw() {
+        for (int w = 0; w < alive.length; w++) {
+            // go through the set bits of the word, lowest first
+            for (long bits = alive[w]; bits != 0; bits &= bits - 1) {
+                int i = w * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                sprite.draw(store.getX(i), store.getY(i));
+            }
+        }
+    }
+
+    /**
+     * Queues all pickups that are still on the map to be drawn.
+     * @param queue the render queue of the frame
+     */
+    public void draw(RenderQueue queue) {
+        draw(queue, alive);
+    }
+
+    /**
+     * Queues the pickups that were on the map when a copy was taken with copyAlive().
+     * @param queue the render queue of the frame
+     * @param alive the copy; bit i of the words is set if pickup i is alive
+     */
+    public void draw(RenderQueue queue, long[] alive) {
+        for (int w = 0; w < alive.length; w++) {
+            for (long bits = alive[w]; bits != 0; bits &= bits - 1) {
+                int i = w * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                queue.add(RenderQueue.PICKUPS, sprite, store.getX(i), store.getY(i), 0);
+            }
+        }
+    }
+}
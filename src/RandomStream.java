@@ -0,0 +1,111 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The RandomStream class.
+ * A stream of random numbers that gives exactly the same numbers as java.util.SplittableRandom
+ * (the same algorithm, SplitMix64), but whose state can be saved and restored, so that a
+ * level can be rolled back without its ghosts' randomness going out of step.
+ * The state is two longs: the seed, which moves on by the gamma with every number drawn.
+ */
+public class RandomStream {
+    /** The number of bytes writeState() writes */
+    public final static int STATE_BYTES = 2 * Long.BYTES;
+    private final static long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+    private long gamma;
+
+    /**
+     * The constructor for RandomStream, like new SplittableRandom(seed).
+     * @param seed the seed
+     */
+    public RandomStream(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private RandomStream(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Splits off a new, independent stream, like SplittableRandom.split().
+     * @return RandomStream the new stream.
+     */
+    public RandomStream split() {
+        return new RandomStream(nextLong(), mixGamma(nextSeed()));
+    }
+
+    /**
+     * Draws a random long, like SplittableRandom.nextLong().
+     * @return long the number.
+     */
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    /**
+     * Draws a random int from 0 (inclusive) to bound (exclusive),
+     * like SplittableRandom.nextInt(int).
+     * @param bound the upper bound, which must be positive
+     * @return int the number.
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        int r = mix32(nextSeed());
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            // power of two
+            r &= m;
+        } else {
+            // reject the top of the range that would make some numbers more likely
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed()) >>> 1);
+        }
+        return r;
+    }
+
+    /**
+     * Writes the state of this stream, to be read back with readState().
+     * @param out the buffer to write STATE_BYTES bytes into
+     */
+    public void writeState(ByteBuffer out) {
+        out.putLong(seed);
+        out.putLong(gamma);
+    }
+
+    /**
+     * Restores the state written by writeState(), after which this stream draws the same
+     * numbers it did then.
+     * @param in the buffer to read STATE_BYTES bytes from
+     */
+    public void readState(ByteBuffer in) {
+        seed = in.getLong();
+        gamma = in.getLong();
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    // gammas must be odd, and have enough bit changes to mix well
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
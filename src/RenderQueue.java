@@ -0,0 +1,159 @@
+import bagel.DrawOptions;
+import bagel.Window;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The RenderQueue class.
+ * Collects the sprites drawn in a frame instead of drawing them straight away, then draws them
+ * sorted by layer and by image, so that all sprites using the same image (e.g. every dot) are
+ * drawn one after another with their texture still bound, rather than switching textures for
+ * every entity.
+ * <p></p>
+ * Things that never move (the walls) go into a static layer. Its commands are recorded and
+ * sorted once, and replayed every frame until clearStatic() is called, so a frame only queues
+ * and sorts the sprites that can change.
+ * <p></p>
+ * Commands are kept in parallel arrays that grow as needed and are reused every frame,
+ * so queueing a sprite doesn't allocate anything. Sprites outside the window are dropped.
+ */
+public class RenderQueue {
+    // layers, drawn from lowest to highest
+    /** Things that never move, e.g. walls */
+    public final static int STATIC = 0;
+    /** Things that can disappear but never move, e.g. dots */
+    public final static int PICKUPS = 1;
+    /** Things that move, e.g. ghosts */
+    public final static int ACTORS = 2;
+    /** The player, drawn over everything else */
+    public final static int PAC = 3;
+
+    private final static int INITIAL_CAPACITY = 64;
+    // a sort key is the layer, then the sprite id, then the order the command was queued in
+    // (so that sprites of the same image and layer keep their order)
+    private final static int ORDER_BITS = 32;
+    private final static int SPRITE_BITS = 24;
+    private final static long ORDER_MASK = (1L << ORDER_BITS) - 1;
+
+    // drawing is done on one thread, so the rotation options can be shared by every command
+    private final DrawOptions options = new DrawOptions();
+
+    private final Commands frame = new Commands();
+    private final Commands statics = new Commands();
+    private boolean staticSorted = false;
+
+    // one set of commands, with their sort keys
+    private static class Commands {
+        private final ArrayList<Sprite> sprites = new ArrayList<>();
+        private double[] x = new double[INITIAL_CAPACITY];
+        private double[] y = new double[INITIAL_CAPACITY];
+        private double[] rotation = new double[INITIAL_CAPACITY];
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int size = 0;
+
+        private void add(int layer, Sprite sprite, double x, double y, double rotation) {
+            if (size == keys.length) {
+                int capacity = size * 2;
+                this.x = Arrays.copyOf(this.x, capacity);
+                this.y = Arrays.copyOf(this.y, capacity);
+                this.rotation = Arrays.copyOf(this.rotation, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+            }
+            sprites.add(sprite);
+            this.x[size] = x;
+            this.y[size] = y;
+            this.rotation[size] = rotation;
+            keys[size] = ((long) layer << (SPRITE_BITS + ORDER_BITS))
+                    | ((long) sprite.getId() << ORDER_BITS) | size;
+            size++;
+        }
+
+        private void sort() {
+            Arrays.sort(keys, 0, size);
+        }
+
+        private void clear() {
+            sprites.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Queues a sprite for drawing in this frame.
+     * @param layer the layer to draw in, e.g. RenderQueue.ACTORS
+     * @param sprite the sprite to draw
+     * @param x the x coordinate of the sprite's top-left corner
+     * @param y the y coordinate of the sprite's top-left corner
+     * @param rotation the rotation in radians around the sprite's centre
+     */
+    public void add(int layer, Sprite sprite, double x, double y, double rotation) {
+        if (isVisible(sprite, x, y)) {
+            frame.add(layer, sprite, x, y, rotation);
+        }
+    }
+
+    /**
+     * Adds a sprite to the static layer, which is drawn in every frame until clearStatic().
+     * @param sprite the sprite to draw
+     * @param x the x coordinate of the sprite's top-left corner
+     * @param y the y coordinate of the sprite's top-left corner
+     */
+    public void addStatic(Sprite sprite, double x, double y) {
+        if (isVisible(sprite, x, y)) {
+            statics.add(STATIC, sprite, x, y, 0);
+            staticSorted = false;
+        }
+    }
+
+    /**
+     * Empties the static layer, e.g. when a new level is loaded.
+     */
+    public void clearStatic() {
+        statics.clear();
+        staticSorted = false;
+    }
+
+    /**
+     * A getter for the number of sprites that will be drawn by the next submit().
+     * @return int the number of queued sprites, including the static layer.
+     */
+    public int size() {
+        return statics.size + frame.size;
+    }
+
+    /**
+     * Draws the static layer and everything queued in this frame, then empties the queue
+     * for the next frame. Must be called from the window's thread.
+     */
+    public void submit() {
+        if (!staticSorted) {
+            statics.sort();
+            staticSorted = true;
+        }
+        frame.sort();
+        // the static layer is the lowest, so it is always drawn first
+        draw(statics);
+        draw(frame);
+        frame.clear();
+    }
+
+    private void draw(Commands commands) {
+        for (int k = 0; k < commands.size; k++) {
+            int i = (int) (commands.keys[k] & ORDER_MASK);
+            Sprite sprite = commands.sprites.get(i);
+            if (commands.rotation[i] == 0) {
+                sprite.draw(commands.x[i], commands.y[i]);
+            } else {
+                options.setRotation(commands.rotation[i]);
+                sprite.draw(commands.x[i], commands.y[i], options);
+            }
+        }
+    }
+
+    // checks if any part of the sprite is inside the window
+    private static boolean isVisible(Sprite sprite, double x, double y) {
+        return x < Window.getWidth() && y < Window.getHeight()
+                && x + sprite.getWidth() > 0 && y + sprite.getHeight() > 0;
+    }
+}
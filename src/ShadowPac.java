@@ -1,5 +1,14 @@
 import bagel.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * Skeleton Code for SWEN20003 Project 2, Semester 1, 2023
  *
@@ -11,129 +20,295 @@ public class ShadowPac extends AbstractGame {
     private final static String GAME_TITLE = "SHADOW PAC";
     private final static int WINDOW_WIDTH = 1024;
     private final static int WINDOW_HEIGHT = 768;
-    private final Image BACKGROUND_IMAGE = new Image("res/background0.png");
-
-    // game start and end
-    private boolean Level0Start = false;
-    private boolean Level0End = false;
-    private boolean Level1Start = false;
-    private boolean Level1End = false;
-    private char Level0Outcome;
-    private char Level1Outcome;
-
-    // levels
-    private final Level0 LEVEL_0;
-    private final Level1 LEVEL_1;
+    private final Sprite BACKGROUND_IMAGE = Assets.sprite("res/background0.png");
+
+    // what the game is showing: the levels of the manifest are played in order, each one
+    // going START -> PLAYING -> COMPLETE, until the last level is won or all lives are lost
+    private final static int START = 0;      // instructions, waiting for space
+    private final static int PLAYING = 1;
+    private final static int COMPLETE = 2;   // the level complete message
+    private final static int WON = 3;
+    private final static int LOST = 4;
+    private int screen = START;
+
+    // levels, with their seeds so that they can be replayed. Only the first level is built at
+    // startup; every next one is built in the background while the level complete message
+    // is shown, and handed over once it's ready
+    private final LevelManifest MANIFEST;
+    private final SplittableRandom SEEDS = new SplittableRandom();
+    private int levelNumber = 0;
+    private Level level;
+    private long levelSeed;
+    private CompletableFuture<Level> nextLevel;
+    private long nextLevelSeed;
     // I'm assuming the player has 3 lives in total, not 3 lives for each level,
     // so I'm instantiating it here instead of in Level.java
     private final Heart HEART = new Heart();
 
-    // frames
-    private int frameCounter = 0;
-    private final static int LEVEL_COMPLETE_FRAMES = 300;
+    // the level complete message is shown for as long as 300 ticks take
+    private final static long LEVEL_COMPLETE_NANOS = 300 * Simulation.TICK_NANOS;
+    private long levelCompleteStart = 0;
+
+    // the level being played, on its own thread
+    private Simulation simulation;
 
     // message
     private Message message = new Message();
 
+    // every level played is recorded into REPLAY_DIR, see InputReplay
+    private final static String REPLAY_DIR = "replays";
+    private InputRecorder recorder;
+    private Level recordedLevel;
+    private boolean recordingFailed = false;
+
+    // frame phase timings, shown on screen when OVERLAY_KEY is pressed, and written to
+    // PROFILE_FILE when the game is closed
+    private final static String PROFILE_FILE = "frame-profile.txt";
+    private final static String TICK_PROFILE_FILE = "tick-profile.txt";
+    private final static Keys OVERLAY_KEY = Keys.F3;
+    private final static int OVERLAY_REFRESH_FRAMES = 30;
+    private final FrameProfiler PROFILER = new FrameProfiler(true);
+    // the simulation thread has its own profiler, as profilers are not thread-safe
+    private final FrameProfiler TICK_PROFILER = new FrameProfiler(true);
+    private boolean showOverlay = false;
+    private String overlayText = "";
+    private int overlayCounter = 0;
+
     /**
      * The constructor for ShadowPac.
      */
     public ShadowPac() {
         super(WINDOW_WIDTH, WINDOW_HEIGHT, GAME_TITLE);
-        LEVEL_0 = new Level0();
-        LEVEL_1 = new Level1();
+        try {
+            MANIFEST = new LevelManifest(LevelManifest.DEFAULT_FILE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the level manifest", e);
+        }
+        levelSeed = SEEDS.nextLong();
+        setLevel(MANIFEST.create(0, levelSeed));
+        message.setProfiler(PROFILER);
     }
 
     /**
      * The entry point for the program.
+     * With --server (and optionally a port), runs an AgentServer instead of the game, without
+     * opening a window.
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--server")) {
+            AgentServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // pack the sprites into one texture while the window opens
+        Assets.preload();
         ShadowPac game = new ShadowPac();
         game.run();
+        // the window has been closed, possibly in the middle of a level
+        if (game.simulation != null) {
+            game.simulation.stop();
+        }
+        game.finishRecording(Level.PLAYING);
+        try {
+            game.PROFILER.dump(Paths.get(PROFILE_FILE));
+            game.TICK_PROFILER.dump(Paths.get(TICK_PROFILE_FILE));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
-     * Performs a state update.
+     * Performs a state update, timing the whole frame.
      * Allows the game to exit when the escape key is pressed.
      */
     protected void update(Input input) {
+        long start = PROFILER.start();
+        updateGame(input);
 
-        if (input.wasPressed(Keys.ESCAPE)) {
-            Window.close();
+        if (input.wasPressed(OVERLAY_KEY)) {
+            showOverlay = !showOverlay;
         }
-        BACKGROUND_IMAGE.draw(Window.getWidth()/2.0, Window.getHeight()/2.0);
-
-        // level 0
-        if (!Level0Start) {
-            // Initial game state before space was pressed
-            message.drawStart0();
-            if (input.wasPressed(Keys.SPACE)) {
-                Level0Start = true;
+        if (showOverlay) {
+            // the table is only rebuilt every few frames, so that it can be read
+            if (overlayCounter++ % OVERLAY_REFRESH_FRAMES == 0) {
+                overlayText = PROFILER.summary() + "TICKS\n" + TICK_PROFILER.summary();
             }
-        } else if (!Level0End) {
-            // The game after space was pressed -- play level0!
-            Level0Outcome = playLevel(input, LEVEL_0);
+            message.drawProfile(overlayText);
         }
+        PROFILER.stop(FrameProfiler.FRAME, start);
+        PROFILER.endFrame();
+    }
 
-        // if the player wins level 0
-        if (Level0Outcome == Level.WIN && Level1Outcome != Level.WIN) {
-            Level0End = true;
+    /**
+     * Plays one frame of the game.
+     */
+    private void updateGame(Input input) {
+
+        if (input.wasPressed(Keys.ESCAPE)) {
+            Window.close();
         }
+        BACKGROUND_IMAGE.draw(Window.getWidth()/2.0 - BACKGROUND_IMAGE.getWidth()/2.0,
+                Window.getHeight()/2.0 - BACKGROUND_IMAGE.getHeight()/2.0);
 
-        // level 1
-        if (Level0End && !Level1Start) {
-            // show level complete message for 300 frames
-            // note that pressing space won't do anything during this 300 frames
-            if (frameCounter < LEVEL_COMPLETE_FRAMES) {
-                frameCounter++;
-                message.drawLevelComplete();
+        if (screen == START) {
+            // instructions before the level starts; the first level has its own
+            if (levelNumber == 0) {
+                message.drawStart0();
             } else {
-                // after that, display instructions
-                // now, pressing space will start level 1
                 message.drawStart1();
-                if (input.wasPressed(Keys.SPACE)) {
-                    Level1Start = true;
+            }
+            if (input.wasPressed(Keys.SPACE)) {
+                screen = PLAYING;
+            }
+        } else if (screen == PLAYING) {
+            char outcome = playLevel(input, level, levelNumber, levelSeed);
+            if (outcome == Level.LOSE) {
+                screen = LOST;
+            } else if (outcome == Level.WIN) {
+                if (levelNumber == MANIFEST.size() - 1) {
+                    screen = WON;
+                } else {
+                    screen = COMPLETE;
+                    levelCompleteStart = System.nanoTime();
+                    loadNextLevel();
+                }
+            }
+        } else if (screen == COMPLETE) {
+            // show level complete message for 300 ticks
+            // note that pressing space won't do anything during this time.
+            // the message stays up until the next level has loaded, so starting it never stalls
+            message.drawLevelComplete();
+            if (System.nanoTime() - levelCompleteStart >= LEVEL_COMPLETE_NANOS
+                    && nextLevel.isDone()) {
+                Level next;
+                try {
+                    next = nextLevel.join();
+                } catch (CompletionException e) {
+                    // the next level's world file is broken, so there is nothing left to play
+                    System.err.println(e.getCause().getMessage());
+                    Window.close();
+                    return;
                 }
+                levelNumber++;
+                levelSeed = nextLevelSeed;
+                setLevel(next);
+                nextLevel = null;
+                screen = START;
             }
-        } else if (Level0End && !Level1End) {
-            // play level1
-            Level1Outcome = playLevel(input, LEVEL_1);
         }
 
-        // if the player wins level 1
-        if (Level1Outcome == Level.WIN) {
-            Level1End = true;
+        // if the player wins the last level
+        if (screen == WON) {
             message.drawWin();
         }
 
         // if the player loses all their lives
-        if (HEART.getHearts() == 0) {
-            Level1End = true;
+        if (screen == LOST) {
             message.drawLose();
         }
     }
 
+    /**
+     * Starts building the next level of the manifest in the background.
+     */
+    private void loadNextLevel() {
+        int number = levelNumber + 1;
+        nextLevelSeed = SEEDS.nextLong();
+        long seed = nextLevelSeed;
+        // built on its own daemon thread, so it never keeps a closed game open
+        nextLevel = CompletableFuture.supplyAsync(() -> MANIFEST.create(number, seed), task -> {
+            Thread loader = new Thread(task, "level-loader");
+            loader.setDaemon(true);
+            loader.start();
+        });
+    }
+
+    /**
+     * Makes a level the one being played, with profiling turned on.
+     */
+    private void setLevel(Level level) {
+        this.level = level;
+        level.setProfiler(PROFILER);
+        level.setTickProfiler(TICK_PROFILER);
+    }
+
     /**
      * Allows the player to play a level until they win or run out of lives.
+     * The level is played by a Simulation on its own thread; this only passes on the keys
+     * and draws the latest snapshot. Every tick played is recorded.
      * @param input player's keyboard input
      * @param level the level that is going to be played
-     * @return char of either Level.WIN = 'w', Level.LOSE = 'l', or Level.PLAYING = 'p'.
+     * @param number the level number, for the recording
+     * @param seed the seed the level was built with, for the recording
+     * @return char of either Level.WIN = 'w', Level.LOSE = 'l' (no lives left),
+     *         or Level.PLAYING = 'p'.
      */
-    private char playLevel(Input input, Level level) {
-        char outcome = 0;
-        if (HEART.getHearts() > 0) {
-            HEART.drawHearts();
-            outcome = level.play(input);
-
-            if (outcome == Level.LOSE) {
-                HEART.loseHearts(1);
+    private char playLevel(Input input, Level level, int number, long seed) {
+        if (simulation == null) {
+            if (HEART.getHearts() == 0) {
+                return Level.LOSE;
             }
+            startRecording(level, number, seed);
+            simulation = new Simulation(level, HEART, Simulation.TICK_RATE, this::record);
+            simulation.setProfiler(TICK_PROFILER);
+            simulation.start();
         }
+        simulation.setKeys(Level.readKeys(input));
+        LevelSnapshot snapshot = simulation.latest();
 
-        if (HEART.getHearts() == 0) {
-            return Level.LOSE;
-        }
+        long start = PROFILER.start();
+        HEART.drawHearts();
+        PROFILER.stop(FrameProfiler.HUD, start);
+        level.render(snapshot, simulation.alpha(snapshot));
 
+        char outcome = snapshot.getOutcome();
+        if (outcome != Level.PLAYING) {
+            // the simulation has stopped by itself, so the recording is safe to finish here
+            simulation.stop();
+            simulation = null;
+            finishRecording(outcome);
+        }
         return outcome;
     }
-}
\ No newline at end of file
+
+    /**
+     * Starts recording a level. If recording fails, the game goes on without it.
+     */
+    private void startRecording(Level level, int number, long seed) {
+        if (recordingFailed) return;
+        Path file = Paths.get(REPLAY_DIR, "level" + number + "-" + System.currentTimeMillis()
+                + ".rpl");
+        try {
+            recorder = new InputRecorder(file, number, seed, HEART.getHearts());
+            recordedLevel = level;
+        } catch (IOException e) {
+            e.printStackTrace();
+            recordingFailed = true;
+        }
+    }
+
+    // called on the simulation thread before every tick
+    private void record(int keys) {
+        if (recorder == null) return;
+        try {
+            recorder.record(keys);
+        } catch (IOException e) {
+            e.printStackTrace();
+            recordingFailed = true;
+            finishRecording(Level.PLAYING);
+        }
+    }
+
+    /**
+     * Ends the current recording (if there is one) with the outcome of the level.
+     */
+    private void finishRecording(char outcome) {
+        if (recorder == null) return;
+        try {
+            recorder.finish(outcome, recordedLevel.getScore());
+            recorder.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        recorder = null;
+    }
+}
@@ -0,0 +1,192 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+/**
+ * The Simulation class.
+ * Plays a level on its own thread at a fixed number of ticks per second, no matter how fast
+ * (or slow) the window draws frames. A slow frame therefore no longer slows the game down, and a
+ * fast monitor no longer speeds it up. All gameplay timing (frenzy mode, pac opening and closing
+ * its mouth) counts ticks, so it takes the same real time on every machine.
+ * <p></p>
+ * The window's thread passes in the keys held down with setKeys(), and draws the latest state
+ * with latest(). After every tick the level is copied into a LevelSnapshot, and snapshots are
+ * triple-buffered: the simulation fills one, the window draws another, and the latest finished
+ * one is swapped between them. Neither thread ever waits for the other.
+ * <p></p>
+ * If the simulation falls behind (e.g. the machine is busy), it plays up to MAX_CATCH_UP_TICKS
+ * ticks at once, then gives up on the rest rather than running in fast-forward.
+ */
+public class Simulation implements Runnable {
+    /** The default number of ticks per second, which is the frame rate the game was made for */
+    public final static int TICK_RATE = 60;
+    /** The length of a tick at the default tick rate */
+    public final static long TICK_NANOS = TimeUnit.SECONDS.toNanos(1) / TICK_RATE;
+    private final static int MAX_CATCH_UP_TICKS = 5;
+
+    private final Level level;
+    private final Heart heart;
+    private final IntConsumer onTick;
+    private final long tickNanos;
+    private final AtomicInteger keys = new AtomicInteger();
+
+    // triple buffer: back is only touched by the simulation thread, front only by the
+    // window's thread, and ready is swapped between them
+    private final AtomicReference<LevelSnapshot> ready = new AtomicReference<>();
+    private LevelSnapshot back = new LevelSnapshot();
+    private LevelSnapshot front = new LevelSnapshot();
+    private LevelSnapshot published;
+
+    private FrameProfiler profiler = FrameProfiler.DISABLED;
+    private volatile boolean running = false;
+    private Thread thread;
+    private long ticks = 0;
+    private char outcome = Level.PLAYING;
+
+    /**
+     * The constructor for Simulation.
+     * @param level the level to play
+     * @param heart the player's lives, which are lost on the simulation thread
+     * @param tickRate the number of ticks per second
+     * @param onTick called on the simulation thread with the keys of every tick, before the tick
+     *               is played (e.g. to record them)
+     */
+    public Simulation(Level level, Heart heart, int tickRate, IntConsumer onTick) {
+        this.level = level;
+        this.heart = heart;
+        this.tickNanos = TimeUnit.SECONDS.toNanos(1) / tickRate;
+        this.onTick = onTick;
+    }
+
+    /**
+     * Turns on profiling of the ticks. The level's tick profiler should be the same one,
+     * and must not be used by any other thread.
+     * @param profiler the profiler; every tick is ended as one of its frames
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Takes the first snapshot and starts playing on a new thread.
+     */
+    public void start() {
+        LevelSnapshot first = new LevelSnapshot();
+        publish(first, System.nanoTime());
+        ready.set(first);
+        published = first;
+        running = true;
+        thread = new Thread(this, "simulation");
+        // the simulation must never keep the game open after the window is closed
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops playing, and waits for the current tick to finish. Afterwards, the level and
+     * the player's lives can be used by the calling thread again.
+     */
+    public void stop() {
+        running = false;
+        if (thread == null) return;
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sets the keys held down, which are used from the next tick on.
+     * @param keys the Level.KEY_* flags of the arrow keys held down
+     */
+    public void setKeys(int keys) {
+        this.keys.set(keys);
+    }
+
+    /**
+     * Gets the latest snapshot of the level. Must only be called from one thread (the window's).
+     * The snapshot stays unchanged until the next call.
+     * @return LevelSnapshot the latest snapshot.
+     */
+    public LevelSnapshot latest() {
+        if (ready.get().getTick() > front.getTick() || front.getTickNanos() == 0) {
+            front = ready.getAndSet(front);
+        }
+        return front;
+    }
+
+    /**
+     * Works out how far the game has got between the snapshot's tick and the next one,
+     * to interpolate the positions of moving entities by.
+     * @param snapshot a snapshot returned by latest()
+     * @return double between 0 (at the snapshot's tick) and 1 (a whole tick later).
+     */
+    public double alpha(LevelSnapshot snapshot) {
+        double alpha = (double) (System.nanoTime() - snapshot.getTickNanos()) / tickNanos;
+        return Math.max(0, Math.min(1, alpha));
+    }
+
+    /**
+     * Plays ticks at the tick rate until the level is won, all lives are lost, or stop()
+     * is called. This runs on the simulation thread.
+     */
+    @Override
+    public void run() {
+        long next = System.nanoTime() + tickNanos;
+        while (running && outcome == Level.PLAYING) {
+            long now = System.nanoTime();
+            if (now < next) {
+                LockSupport.parkNanos(next - now);
+                continue;
+            }
+            int caughtUp = 0;
+            while (next <= now && caughtUp < MAX_CATCH_UP_TICKS && outcome == Level.PLAYING) {
+                tick(next);
+                next += tickNanos;
+                caughtUp++;
+            }
+            // too far behind: skip the missed ticks instead of trying to catch up on them
+            if (next <= now) {
+                next = now + tickNanos;
+            }
+        }
+    }
+
+    private void tick(long tickNanos) {
+        long start = profiler.start();
+        int keys = this.keys.get();
+        onTick.accept(keys);
+        char tick = level.tick(keys);
+        ticks++;
+        if (tick == Level.WIN) {
+            outcome = Level.WIN;
+        } else if (tick == Level.LOSE) {
+            heart.loseHearts(1);
+            if (heart.getHearts() == 0) {
+                outcome = Level.LOSE;
+            }
+        }
+        profiler.stop(FrameProfiler.FRAME, start);
+        profiler.endFrame();
+
+        publish(back, tickNanos);
+        back = ready.getAndSet(back);
+    }
+
+    private void publish(LevelSnapshot snapshot, long tickNanos) {
+        level.snapshot(snapshot, published);
+        snapshot.tick = ticks;
+        snapshot.tickNanos = tickNanos;
+        snapshot.outcome = outcome;
+        published = snapshot;
+    }
+}
@@ -0,0 +1,133 @@
+import bagel.DrawOptions;
+import bagel.Image;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Sprite class.
+ * A lazily-loaded image. Bagel can only create an Image once the game window (and therefore
+ * its OpenGL context) exists, which would make it impossible to simulate a level without a
+ * window. A sprite reads only the width and height from the PNG header up front, and creates
+ * the actual Image the first time it is needed for drawing.
+ * <p></p>
+ * Sprites are shared: get them from Assets.sprite() rather than creating them. If Assets has
+ * packed the sprite into its atlas, the sprite is drawn as a section of the atlas instead of
+ * from its own image.
+ */
+public class Sprite {
+    // a PNG file starts with an 8-byte signature, then the IHDR chunk length and type,
+    // which are followed by the image width and height as 4-byte integers
+    private final static int PNG_SIZE_OFFSET = 16;
+    // sprites are created in static initialisers, which may run on several threads at once
+    private final static AtomicInteger NEXT_ID = new AtomicInteger();
+    // draw options for draws without options of their own, only used on the window's thread
+    private final static DrawOptions SECTION_OPTIONS = new DrawOptions();
+
+    private final int id = NEXT_ID.getAndIncrement();
+
+    private final String fileName;
+    private final double width;
+    private final double height;
+    private Image image;
+    // where this sprite is in the atlas, looked up on the first draw (null if not in one)
+    private Assets.Atlas.Region region;
+    private boolean regionResolved = false;
+
+    /**
+     * The constructor for Sprite. Use Assets.sprite() instead, which shares sprites.
+     * @param fileName the PNG file of this sprite
+     */
+    Sprite(String fileName) {
+        this.fileName = fileName;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(fileName))) {
+            in.skipBytes(PNG_SIZE_OFFSET);
+            this.width = in.readInt();
+            this.height = in.readInt();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read sprite " + fileName, e);
+        }
+    }
+
+    /**
+     * A getter for the sprite's width.
+     * @return double the width in pixels.
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * A getter for the sprite's height.
+     * @return double the height in pixels.
+     */
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * A getter for the sprite's id, which is unique to this sprite. Used by RenderQueue to
+     * group draws of the same image.
+     * @return int the id.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * A getter for the sprite's image. Loads the image on first use, so this must only be
+     * called once the game window exists.
+     * @return Image the image of this sprite.
+     */
+    public Image getImage() {
+        if (image == null) {
+            image = new Image(fileName);
+        }
+        return image;
+    }
+
+    /**
+     * Draws the sprite with its top-left corner at the given location. Must only be called
+     * from the window's thread.
+     * @param x the x coordinate of the top-left corner
+     * @param y the y coordinate of the top-left corner
+     */
+    public void draw(double x, double y) {
+        if (atlasRegion() == null) {
+            getImage().drawFromTopLeft(x, y);
+        } else {
+            draw(x, y, SECTION_OPTIONS);
+        }
+    }
+
+    /**
+     * Draws the sprite with its top-left corner at the given location. Must only be called
+     * from the window's thread.
+     * @param x the x coordinate of the top-left corner
+     * @param y the y coordinate of the top-left corner
+     * @param options Bagel's DrawOptions, e.g. for rotation. If the sprite is in the atlas,
+     *                its section is set on these options.
+     */
+    public void draw(double x, double y, DrawOptions options) {
+        Assets.Atlas.Region region = atlasRegion();
+        if (region == null) {
+            getImage().drawFromTopLeft(x, y, options);
+        } else {
+            // drawFromTopLeft() would find the centre from the whole atlas' size, so the
+            // section is drawn around its own centre instead
+            region.atlas.getImage().draw(x + width / 2, y + height / 2,
+                    options.setSection(region.x, region.y, width, height));
+        }
+    }
+
+    private Assets.Atlas.Region atlasRegion() {
+        if (!regionResolved) {
+            region = Assets.region(fileName);
+            regionResolved = true;
+        }
+        return region;
+    }
+}
@@ -0,0 +1,201 @@
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The VectorEnv class.
+ * Plays many copies of one level side by side in lockstep, for training agents against the
+ * game: every step() takes one action per copy (an "environment"), advances all of them, and
+ * writes what they see into one shared off-heap buffer, with their rewards and done flags
+ * in plain arrays. Everything is allocated up front, so stepping never creates any garbage,
+ * and the buffer can be handed to native code (e.g. viewed as an array in Python) without
+ * being copied.
+ * <p></p>
+ * Like the real game, the player has the lives of one Heart in every environment, and an
+ * episode ends when the level is won, all lives are lost, or the step limit is reached.
+ * An environment whose episode has ended is reset straight away, by restoring the state
+ * it started in (see Level.saveState()), so its next observation is the start of a new
+ * episode. Environment i is built with the seed baseSeed + i, so a run can be repeated.
+ * <p></p>
+ * Environments are stepped one after another on the calling thread; to use more cores,
+ * give each thread its own VectorEnv.
+ */
+public class VectorEnv {
+    /** The action of holding no key down */
+    public final static int NOOP = 0;
+    /** The action of holding the right arrow key down */
+    public final static int RIGHT = 1;
+    /** The action of holding the left arrow key down */
+    public final static int LEFT = 2;
+    /** The action of holding the up arrow key down */
+    public final static int UP = 3;
+    /** The action of holding the down arrow key down */
+    public final static int DOWN = 4;
+    // the keys held down for every action
+    private final static int[] ACTION_KEYS = {0, Level.KEY_RIGHT, Level.KEY_LEFT, Level.KEY_UP,
+            Level.KEY_DOWN};
+
+    private final Level[] levels;
+    private final ByteBuffer[] startStates;
+    private final int ticksPerStep;
+    private final long maxSteps;
+
+    private final ByteBuffer observations;
+    private final int observationSize;
+    private final float[] rewards;
+    private final boolean[] dones;
+    private final int[] lives;
+    private final long[] steps;
+    private final int[] scores;
+
+    /**
+     * The constructor for VectorEnv. Builds every environment and writes their first
+     * observations, in the platform's native byte order.
+     * @param manifest the manifest to build the level from
+     * @param levelNumber the number of the level in the manifest
+     * @param count the number of environments
+     * @param baseSeed the seed of the first environment
+     * @param ticksPerStep the number of ticks every step advances by (more than 1 fast
+     *                     forwards, see Level.fastForward())
+     * @param maxSteps the most steps an episode may take before it is ended
+     * @throws UncheckedIOException if the level's world file can't be loaded
+     */
+    public VectorEnv(LevelManifest manifest, int levelNumber, int count, long baseSeed,
+                     int ticksPerStep, long maxSteps) {
+        this(manifest, levelNumber, count, baseSeed, ticksPerStep, maxSteps,
+                ByteOrder.nativeOrder());
+    }
+
+    /**
+     * The constructor for VectorEnv, with observations in a given byte order, e.g. the
+     * byte order of a protocol they are sent over as they are (see AgentServer).
+     * @param manifest the manifest to build the level from
+     * @param levelNumber the number of the level in the manifest
+     * @param count the number of environments
+     * @param baseSeed the seed of the first environment
+     * @param ticksPerStep the number of ticks every step advances by (more than 1 fast
+     *                     forwards, see Level.fastForward())
+     * @param maxSteps the most steps an episode may take before it is ended
+     * @param order the byte order of the observations
+     * @throws UncheckedIOException if the level's world file can't be loaded
+     */
+    public VectorEnv(LevelManifest manifest, int levelNumber, int count, long baseSeed,
+                     int ticksPerStep, long maxSteps, ByteOrder order) {
+        if (count < 1 || ticksPerStep < 1 || maxSteps < 1) {
+            throw new IllegalArgumentException("Environments, ticks per step and max steps "
+                    + "must be positive");
+        }
+        this.ticksPerStep = ticksPerStep;
+        this.maxSteps = maxSteps;
+        levels = new Level[count];
+        startStates = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            levels[i] = manifest.create(levelNumber, baseSeed + i);
+            startStates[i] = levels[i].newStateBuffer();
+            levels[i].saveState(startStates[i]);
+        }
+
+        // every copy of a level has the same layout, so the observations are evenly spaced
+        observationSize = levels[0].observationSize();
+        observations = ByteBuffer.allocateDirect(count * observationSize).order(order);
+        rewards = new float[count];
+        dones = new boolean[count];
+        lives = new int[count];
+        steps = new long[count];
+        scores = new int[count];
+        for (int i = 0; i < count; i++) {
+            reset(i);
+        }
+    }
+
+    /**
+     * Advances every environment by one step.
+     * Afterwards, rewards() holds how much each environment's score went up, and dones()
+     * whether its episode ended (in which case it has been reset, and its observation is
+     * the start of the next episode).
+     * @param actions the action of every environment: NOOP, RIGHT, LEFT, UP or DOWN
+     */
+    public void step(int[] actions) {
+        if (actions.length != levels.length) {
+            throw new IllegalArgumentException("Expected " + levels.length + " actions, got "
+                    + actions.length);
+        }
+        for (int i = 0; i < levels.length; i++) {
+            Level level = levels[i];
+            int keys = ACTION_KEYS[actions[i]];
+            char outcome = ticksPerStep == 1 ? level.tick(keys)
+                    : level.fastForward(keys, ticksPerStep);
+            steps[i]++;
+
+            int score = level.getScore();
+            rewards[i] = score - scores[i];
+            scores[i] = score;
+            if (outcome == Level.LOSE) {
+                lives[i]--;
+            }
+            dones[i] = outcome == Level.WIN || lives[i] == 0 || steps[i] >= maxSteps;
+            if (dones[i]) {
+                reset(i);
+            } else {
+                level.observe(observations, i * observationSize);
+            }
+        }
+    }
+
+    /**
+     * Starts a new episode in one environment, from the state it was built in.
+     * @param i the number of the environment
+     */
+    public void reset(int i) {
+        levels[i].restoreState(startStates[i]);
+        lives[i] = Heart.LIVES;
+        steps[i] = 0;
+        scores[i] = levels[i].getScore();
+        levels[i].observe(observations, i * observationSize);
+    }
+
+    /**
+     * A getter for the observations of every environment, written by the last step() or
+     * reset(). Environment i's observation is the observationSize() bytes from byte
+     * i * observationSize(), laid out as Level.observe() describes, in the byte order the
+     * VectorEnv was built with. The buffer is updated in place, never replaced.
+     * @return ByteBuffer the shared (direct) buffer of observations.
+     */
+    public ByteBuffer observations() {
+        return observations;
+    }
+
+    /**
+     * A getter for the size of one environment's observation.
+     * @return int the size in bytes.
+     */
+    public int observationSize() {
+        return observationSize;
+    }
+
+    /**
+     * A getter for the reward of every environment in the last step(): how much its score
+     * went up. The array is updated in place, never replaced.
+     * @return float[] the rewards.
+     */
+    public float[] rewards() {
+        return rewards;
+    }
+
+    /**
+     * A getter for whether the episode of every environment ended in the last step().
+     * The array is updated in place, never replaced.
+     * @return boolean[] the done flags.
+     */
+    public boolean[] dones() {
+        return dones;
+    }
+
+    /**
+     * A getter for the number of environments.
+     * @return int the number of environments.
+     */
+    public int size() {
+        return levels.length;
+    }
+}
@@ -5,13 +5,15 @@ import bagel.util.*;
  * The Wall class. A subclass to Entity.
  */
 public class Wall extends Entity {
-    private final static Image WALL_IMG = new Image("res/wall.png");
+    /** The sprite every wall is drawn with. */
+    public final static Sprite WALL_IMG = Assets.sprite("res/wall.png");
 
     /**
      * The constructor for Wall.
+     * @param store the store holding the state of this wall
      * @param loc the initial location of wall
      */
-    public Wall(Point loc) {
-        super(WALL_IMG, loc);
+    public Wall(EntityStore store, Point loc) {
+        super(WALL_IMG, store, EntityStore.WALL, loc);
     }
 }
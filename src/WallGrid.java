@@ -0,0 +1,348 @@
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * The WallGrid class.
+ * A uniform grid spatial index over the walls of a level, so that a moving entity only has
+ * to check the walls near it instead of every wall on the map.
+ * <p></p>
+ * Walls never move, so the grid is built once when the level is loaded and never changes.
+ * The level files place walls on a regular grid, so the cells are lined up with the walls:
+ * a wall that exactly fills a cell is rasterised into a bitmap of solid cells, and checking
+ * it is a single bit test. Any other wall (e.g. one that is off the grid in a custom level) is
+ * registered in every cell its bounding box overlaps. Those cells are stored in a compact form:
+ * the wall indices of cell c are cellWalls[cellStart[c]] up to (but not including)
+ * cellWalls[cellStart[c + 1]].
+ * <p></p>
+ * A grid can be written into a compiled level with write(), and read back with read(),
+ * which skips building it again.
+ */
+public class WallGrid {
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    private final BitSet solid;
+    private final int[] cellStart;
+    private final int[] cellWalls;
+
+    // wall bounding boxes
+    private final double[] left;
+    private final double[] top;
+    private final double[] right;
+    private final double[] bottom;
+
+    /**
+     * The constructor for WallGrid. Builds the index from the given walls.
+     * The cell size is the size of the largest wall, so each wall is in at most four cells,
+     * and the grid starts at the top-left-most wall, so the level's walls fill whole cells.
+     * @param walls the store holding the walls of the level
+     */
+    public WallGrid(EntityStore walls) {
+        int n = walls.size();
+        left = new double[n];
+        top = new double[n];
+        right = new double[n];
+        bottom = new double[n];
+        readBoxes(walls);
+
+        double minX = 0, minY = 0, maxX = 0, maxY = 0, size = 1;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || left[i] < minX) minX = left[i];
+            if (i == 0 || top[i] < minY) minY = top[i];
+            if (i == 0 || right[i] > maxX) maxX = right[i];
+            if (i == 0 || bottom[i] > maxY) maxY = bottom[i];
+            size = Math.max(size, Math.max(right[i] - left[i], bottom[i] - top[i]));
+        }
+        originX = minX;
+        originY = minY;
+        cellSize = size;
+        cols = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize));
+        rows = Math.max(1, (int) Math.ceil((maxY - minY) / cellSize));
+
+        // rasterise walls that fill exactly one cell
+        solid = new BitSet(cols * rows);
+        boolean[] onGrid = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int c = col(left[i]), r = row(top[i]);
+            onGrid[i] = left[i] == originX + c * cellSize && top[i] == originY + r * cellSize
+                    && right[i] == left[i] + cellSize && bottom[i] == top[i] + cellSize;
+            if (onGrid[i]) {
+                solid.set(r * cols + c);
+            }
+        }
+
+        // the rest are bucketed: first pass counts the walls per cell, second pass fills them in
+        cellStart = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            if (!onGrid[i]) forEachCell(i, -1, null);
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellWalls = new int[cellStart[cols * rows]];
+        int[] fill = new int[cols * rows];
+        for (int i = 0; i < n; i++) {
+            if (!onGrid[i]) forEachCell(i, i, fill);
+        }
+    }
+
+    // the grid read from a compiled level
+    private WallGrid(EntityStore walls, double originX, double originY, double cellSize,
+                     int cols, int rows, BitSet solid, int[] cellStart, int[] cellWalls) {
+        int n = walls.size();
+        left = new double[n];
+        top = new double[n];
+        right = new double[n];
+        bottom = new double[n];
+        readBoxes(walls);
+        this.originX = originX;
+        this.originY = originY;
+        this.cellSize = cellSize;
+        this.cols = cols;
+        this.rows = rows;
+        this.solid = solid;
+        this.cellStart = cellStart;
+        this.cellWalls = cellWalls;
+    }
+
+    private void readBoxes(EntityStore walls) {
+        for (int i = 0; i < left.length; i++) {
+            left[i] = walls.getX(i);
+            top[i] = walls.getY(i);
+            right[i] = left[i] + walls.getWidth(i);
+            bottom[i] = top[i] + walls.getHeight(i);
+        }
+    }
+
+    /**
+     * Reads a grid written by write(). The walls must be the same as when it was written.
+     * @param walls the store holding the walls of the level
+     * @param in the buffer to read from, positioned at the grid
+     * @return WallGrid the grid
+     */
+    public static WallGrid read(EntityStore walls, ByteBuffer in) {
+        double originX = in.getDouble();
+        double originY = in.getDouble();
+        double cellSize = in.getDouble();
+        int cols = in.getInt();
+        int rows = in.getInt();
+        long[] solid = new long[in.getInt()];
+        in.asLongBuffer().get(solid);
+        in.position(in.position() + solid.length * Long.BYTES);
+        int[] cellStart = new int[cols * rows + 1];
+        in.asIntBuffer().get(cellStart);
+        in.position(in.position() + cellStart.length * Integer.BYTES);
+        int[] cellWalls = new int[cellStart[cols * rows]];
+        in.asIntBuffer().get(cellWalls);
+        in.position(in.position() + cellWalls.length * Integer.BYTES);
+        return new WallGrid(walls, originX, originY, cellSize, cols, rows,
+                BitSet.valueOf(solid), cellStart, cellWalls);
+    }
+
+    /**
+     * Writes this grid, to be read back with read().
+     * @param out the buffer to write into, which must have byteSize() bytes left
+     */
+    public void write(ByteBuffer out) {
+        long[] words = solid.toLongArray();
+        out.putDouble(originX);
+        out.putDouble(originY);
+        out.putDouble(cellSize);
+        out.putInt(cols);
+        out.putInt(rows);
+        out.putInt(words.length);
+        out.asLongBuffer().put(words);
+        out.position(out.position() + words.length * Long.BYTES);
+        out.asIntBuffer().put(cellStart);
+        out.position(out.position() + cellStart.length * Integer.BYTES);
+        out.asIntBuffer().put(cellWalls);
+        out.position(out.position() + cellWalls.length * Integer.BYTES);
+    }
+
+    /**
+     * A getter for the number of bytes write() writes.
+     * @return int the size in bytes.
+     */
+    public int byteSize() {
+        return 3 * Double.BYTES + 3 * Integer.BYTES + solid.toLongArray().length * Long.BYTES
+                + (cellStart.length + cellWalls.length) * Integer.BYTES;
+    }
+
+    // counts wall i in its cells if fill is null, otherwise stores it in them
+    private void forEachCell(int i, int wall, int[] fill) {
+        int col0 = col(left[i]), col1 = col(right[i]);
+        int row0 = row(top[i]), row1 = row(bottom[i]);
+        for (int r = row0; r <= row1; r++) {
+            for (int c = col0; c <= col1; c++) {
+                int cell = r * cols + c;
+                if (fill == null) {
+                    cellStart[cell + 1]++;
+                } else {
+                    cellWalls[cellStart[cell] + fill[cell]++] = wall;
+                }
+            }
+        }
+    }
+
+    private int col(double x) {
+        return Math.min(cols - 1, Math.max(0, (int) Math.floor((x - originX) / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.min(rows - 1, Math.max(0, (int) Math.floor((y - originY) / cellSize)));
+    }
+
+    /**
+     * Finds how far a box can move in a direction before it touches a wall (a swept AABB
+     * test), so that a long move can't tunnel through a wall that a check of the final
+     * position alone would miss. Uses the same rule as intersects(): touching is not
+     * intersecting, so the box may move right up against the wall.
+     * @param x the left of the box
+     * @param y the top of the box
+     * @param width the width of the box
+     * @param height the height of the box
+     * @param dir the direction of the move, one of the MovableEntity.DIR_* codes
+     * @param distance how far the box is moving
+     * @return double how far the box can move without intersecting a wall (at most distance),
+     *         or -1 if the box already intersects a wall.
+     */
+    public double sweep(double x, double y, double width, double height, int dir,
+                        double distance) {
+        boolean horizontal = MovableEntity.DY[dir] == 0;
+        int sign = horizontal ? MovableEntity.DX[dir] : MovableEntity.DY[dir];
+        // the box along the move (near is the side it's moving towards), and across it
+        double lo = horizontal ? x : y;
+        double hi = lo + (horizontal ? width : height);
+        double acrossLo = horizontal ? y : x;
+        double acrossHi = acrossLo + (horizontal ? height : width);
+        double origin = horizontal ? originX : originY;
+        int slabs = horizontal ? cols : rows;
+        int first = clamp((int) Math.floor(((sign > 0 ? lo : hi) - origin) / cellSize), slabs);
+        int last = clamp((int) Math.floor(((sign > 0 ? hi + distance : lo - distance) - origin)
+                / cellSize), slabs);
+        int across0 = horizontal ? row(acrossLo) : col(acrossLo);
+        int across1 = horizontal ? row(acrossHi) : col(acrossHi);
+
+        // go through the slabs of cells the box sweeps, nearest first, until the nearest
+        // wall found is closer than the next slab
+        double free = distance;
+        for (int slab = first; ; slab += sign) {
+            double slabNear = origin + (sign > 0 ? slab : slab + 1) * cellSize;
+            if (sign > 0 ? slabNear >= hi + free : slabNear <= lo - free) break;
+            for (int a = across0; a <= across1; a++) {
+                int c = horizontal ? slab : a, r = horizontal ? a : slab;
+                int cell = r * cols + c;
+                if (solid.get(cell)) {
+                    double cellLo = origin + slab * cellSize;
+                    double cellAcross = (horizontal ? originY : originX) + a * cellSize;
+                    free = contact(free, lo, hi, acrossLo, acrossHi, sign, cellLo,
+                            cellLo + cellSize, cellAcross, cellAcross + cellSize);
+                }
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellWalls[k];
+                    free = horizontal
+                            ? contact(free, lo, hi, acrossLo, acrossHi, sign, left[i], right[i],
+                                    top[i], bottom[i])
+                            : contact(free, lo, hi, acrossLo, acrossHi, sign, top[i], bottom[i],
+                                    left[i], right[i]);
+                }
+                if (free < 0) return -1;
+            }
+            if (slab == last) break;
+        }
+        return free;
+    }
+
+    // the free distance after checking one wall (-1 if the box already intersects it)
+    private static double contact(double free, double lo, double hi, double acrossLo,
+                                  double acrossHi, int sign, double wallLo, double wallHi,
+                                  double wallAcrossLo, double wallAcrossHi) {
+        if (free < 0 || wallAcrossLo >= acrossHi || wallAcrossHi <= acrossLo) return free;
+        if (wallLo < hi && wallHi > lo) return -1;
+        double gap = sign > 0 ? wallLo - hi : lo - wallHi;
+        return gap >= 0 ? Math.min(free, gap) : free;
+    }
+
+    private static int clamp(int i, int n) {
+        return Math.min(n - 1, Math.max(0, i));
+    }
+
+    /**
+     * A getter for the x coordinate of the grid's left edge.
+     * @return double the left of the first column.
+     */
+    public double getOriginX() {
+        return originX;
+    }
+
+    /**
+     * A getter for the y coordinate of the grid's top edge.
+     * @return double the top of the first row.
+     */
+    public double getOriginY() {
+        return originY;
+    }
+
+    /**
+     * A getter for the width (and height) of a cell.
+     * @return double the cell size.
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * A getter for the number of columns.
+     * @return int the number of columns.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * A getter for the number of rows.
+     * @return int the number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Checks whether a box intersects any wall. Uses the same rule as Bagel's
+     * Rectangle.intersects(), i.e. boxes that only touch at the edges do not intersect.
+     * @param x the left of the box
+     * @param y the top of the box
+     * @param width the width of the box
+     * @param height the height of the box
+     * @return boolean true if the box intersects at least one wall, false otherwise
+     */
+    public boolean intersects(double x, double y, double width, double height) {
+        double x2 = x + width;
+        double y2 = y + height;
+        int col0 = col(x), col1 = col(x2);
+        int row0 = row(y), row1 = row(y2);
+        for (int r = row0; r <= row1; r++) {
+            for (int c = col0; c <= col1; c++) {
+                int cell = r * cols + c;
+                if (solid.get(cell)) {
+                    // the box may only touch the cell at the edge, which is not an intersection
+                    double cellX = originX + c * cellSize;
+                    double cellY = originY + r * cellSize;
+                    if (x < cellX + cellSize && x2 > cellX && y < cellY + cellSize
+                            && y2 > cellY) {
+                        return true;
+                    }
+                }
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellWalls[k];
+                    if (x < right[i] && x2 > left[i] && y < bottom[i] && y2 > top[i]) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}